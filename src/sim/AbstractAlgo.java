@@ -1,5 +1,7 @@
 package sim;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,4 +20,16 @@ public abstract class AbstractAlgo<M extends AbstractMsg, N extends AbstractNode
         map.put(AbstractNode.LINK_BOLD + AbstractNode.LINK_ROUTE, "Route link");
         return map;
     }
+
+    // true when links with LINK_BOLD flag never form a loop, not only in quiescent state
+    public boolean isLoopFree() {
+        return false;
+    }
+
+    // algorithm-specific statistics lines for the nodes of a model that are printed by Benchmark
+    public List<String> getStats(Collection<N> nodes) {
+        return Collections.emptyList();
+    }
+
+    public void resetStats() {}
 }
@@ -3,18 +3,34 @@ package sim;
 /**
  * @author Roman Elizarov
  */
-public abstract class AbstractMsg {
+public abstract class AbstractMsg implements Cloneable {
     public final NID from; // neighbour that sends the message
     public final NID to; // to node
+    public final int delay; // virtual time until delivery of timer message
     public boolean firstOverLink; // true only for first message over link to ensure FIFO
 
     public AbstractMsg(NID from, NID to) {
+        this(from, to, 0);
+    }
+
+    public AbstractMsg(NID from, NID to, int delay) {
         this.from = from;
         this.to = to;
+        this.delay = delay;
     }
 
     public abstract String getDescription();
 
+    // copy of this message for a forked model, only firstOverLink flag is changed after message is sent,
+    // subclasses also copy the state that receiving node takes over
+    public AbstractMsg copy() {
+        try {
+            return (AbstractMsg) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     public String toShortString() {
         return from + "->" + to + " " + getDescription();
     }
@@ -23,6 +39,11 @@ public abstract class AbstractMsg {
         return toShortString() + (firstOverLink ? "" : " !FIRST");
     }
 
+    // true for timer messages that node sends to itself, they are delivered after delay in virtual time
+    public boolean isLocal() {
+        return from.equals(to);
+    }
+
     public boolean isOverLink(NID from, NID to) {
         return this.from.equals(from) && this.to.equals(to);
     }
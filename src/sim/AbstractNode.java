@@ -5,7 +5,7 @@ import java.util.*;
 /**
  * @author Roman Elizarov
  */
-public abstract class AbstractNode<M extends AbstractMsg> {
+public abstract class AbstractNode<M extends AbstractMsg> implements Cloneable {
 
     public static int LINK_BOLD = 1;
     public static int LINK_ROUTE = 2;
@@ -39,16 +39,98 @@ public abstract class AbstractNode<M extends AbstractMsg> {
         return in;
     }
 
+    // keeps links of this new node in the off-heap store instead of heap maps
+    void useLinkStore(LinkStore store) {
+        assert ln.isEmpty() && in.isEmpty() : "Must be called before links are created";
+        ln = store.outgoing(i);
+        in = store.incoming(i);
+        linksReplaced();
+    }
+
+    // called when ln and in are replaced, subclasses that keep references to them update them
+    protected void linksReplaced() {}
+
+    // copy of this node for a forked model, subclasses copy their mutable algorithm state
+    @SuppressWarnings("unchecked")
+    public AbstractNode<M> copy() {
+        AbstractNode<M> node;
+        try {
+            node = (AbstractNode<M>) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+        node.in = new LinkedHashSet<>(in);
+        node.ln = new HashMap<>(ln);
+        return node;
+    }
+
     // --- abstract methods ---
 
-    public abstract List<M> process(M msg);
+    // messages that node sends are passed to the sink
+
+    public abstract void process(M msg, MsgSink<M> sink);
 
-    public abstract List<M> updateOutgoingLink(NID m, int d);
+    public abstract void updateOutgoingLink(NID m, int d, MsgSink<M> sink);
 
-    public abstract List<M> updateIncomingLink(NID m);
+    public abstract void updateIncomingLink(NID m, MsgSink<M> sink);
 
     // remove node link (both incoming and outgoing)
-    public abstract List<M> removeLink(NID m);
+    public abstract void removeLink(NID m, MsgSink<M> sink);
+
+    // applies net change of links in a batch at once, sends are computed after all changes are applied,
+    // default implementation applies them one by one
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<M> sink) {
+        // drop messages that are sent over links before they are removed
+        MsgSink<M> removing = msg -> {
+            if (removed.stream().noneMatch(m -> msg.isOverLink(i, m)))
+                sink.send(msg);
+        };
+        for (NID m : removed)
+            removeLink(m, removing);
+        outgoing.forEach((m, d) -> updateOutgoingLink(m, d, sink));
+        for (NID m : incoming)
+            updateIncomingLink(m, sink);
+    }
+
+    // initializes converged state of the node with its links already set from true distances of all nodes
+    // to destination and all links in the network, returns false when the algorithm does not support it
+    public boolean initConverged(Map<NID, Integer> dist, Map<NID, Map<NID, Integer>> links) {
+        return false;
+    }
+
+    // ---------- list-returning adapters ----------
+
+    public List<M> process(M msg) {
+        List<M> send = new ArrayList<>();
+        process(msg, send::add);
+        return send;
+    }
+
+    public List<M> updateOutgoingLink(NID m, int d) {
+        List<M> send = new ArrayList<>();
+        updateOutgoingLink(m, d, send::add);
+        return send;
+    }
+
+    public List<M> updateIncomingLink(NID m) {
+        List<M> send = new ArrayList<>();
+        updateIncomingLink(m, send::add);
+        return send;
+    }
+
+    public List<M> removeLink(NID m) {
+        List<M> send = new ArrayList<>();
+        removeLink(m, send::add);
+        return send;
+    }
+
+    public List<M> updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming) {
+        List<M> send = new ArrayList<>();
+        updateLinks(removed, outgoing, incoming, send::add);
+        return send;
+    }
+
+    // ---------- other abstract methods ----------
 
     public abstract int getLinkFlags(NID m);
 
@@ -0,0 +1,257 @@
+package sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Genetic search for adversarial schedules that maximize the number of messages (or steps) it takes an algorithm
+ * to reconverge. Each individual is a random topology of a few nodes, a sequence of link changes that are made
+ * after the topology converges, and a sequence of choices of the message to deliver next among all messages that
+ * are first over their links. Individuals are evaluated in parallel on all available processors.
+ * The worst schedules found are saved as replayable {@link Trace} files "worst-algo-k.trace".
+ * Takes algorithm name (with options like "DFB:SH"), optional number of nodes, number of generations and
+ * objective ("messages" or "steps") as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class AdversarySearch {
+    private static final int SEED = 1;
+    private static final int NODES = 6;
+    private static final int GENERATIONS = 50;
+
+    private static final int POPULATION = 64;
+    private static final int ELITE = 8; // best individuals that survive to the next generation as is
+    private static final int TOURNAMENT = 4;
+    private static final int CHANGES = 3; // link changes after the topology converges
+    private static final int MAX_GAP = 20; // max number of messages delivered between link changes
+    private static final int CHOICES = 1024; // delivery choices are reused cyclically
+    private static final int WORST = 5; // number of worst traces to save
+    private static final int MAX_STEPS = 100_000; // schedule is cut after this many steps, the rest is drained
+
+    private static final int MIN_D = 1;
+    private static final int MAX_D = 100;
+    private static final double LINK_PR = 0.4; // probability of a link between a pair of nodes in random topology
+    private static final double MUTATION_PR = 0.1; // probability of a single topology or change gene mutation
+
+    public static void main(String[] args) throws IOException {
+        String name = args[0];
+        int nn = args.length > 1 ? Integer.parseInt(args[1]) : NODES;
+        int generations = args.length > 2 ? Integer.parseInt(args[2]) : GENERATIONS;
+        boolean steps = args.length > 3 && args[3].equals("steps");
+        new AdversarySearch(name, nn, steps).go(generations);
+    }
+
+    private final String name;
+    private final int nn;
+    private final boolean steps; // maximize steps instead of messages
+    private final Random rnd = new Random(SEED);
+
+    public AdversarySearch(String name, int nn, boolean steps) {
+        this.name = name;
+        this.nn = nn;
+        this.steps = steps;
+    }
+
+    // genome of the schedule
+    private class Individual {
+        final int[] links = new int[nn * nn]; // distance of bidirectional link i-j (i < j) at i * nn + j, 0 if none
+        final int[][] changes = new int[CHANGES][]; // i, j, new distance (0 to remove), messages delivered after it
+        final int[] choices = new int[CHOICES];
+
+        Trace trace;
+        Trace.Result result;
+
+        long fitness() {
+            return steps ? result.processed : result.sent;
+        }
+    }
+
+    private void go(int generations) throws IOException {
+        System.out.println("Searching worst schedules for " + name + " on " + nn + " nodes by " +
+            (steps ? "steps" : "messages"));
+        List<Individual> population = new ArrayList<>();
+        for (int k = 0; k < POPULATION; k++)
+            population.add(randomIndividual());
+        Map<String, Individual> worst = new HashMap<>(); // distinct traces by their text
+        for (int g = 1; g <= generations; g++) {
+            population.parallelStream().filter(x -> x.result == null).forEach(this::evaluate);
+            population.sort(Comparator.comparingLong(Individual::fitness).reversed());
+            for (Individual x : population.subList(0, WORST))
+                worst.putIfAbsent(x.trace.getEvents().toString(), x);
+            LongSummaryStatistics stats = population.stream().mapToLong(Individual::fitness).summaryStatistics();
+            Individual best = population.get(0);
+            System.out.printf("Generation %d: best %s, average %.1f%n", g, best.result, stats.getAverage());
+            if (g < generations)
+                population = nextGeneration(population);
+        }
+        List<Individual> sorted = worst.values().stream()
+            .sorted(Comparator.comparingLong(Individual::fitness).reversed())
+            .limit(WORST)
+            .collect(Collectors.toList());
+        for (int k = 0; k < sorted.size(); k++) {
+            Individual x = sorted.get(k);
+            File file = new File("worst-" + name.replaceAll("[^A-Za-z0-9=]", "_") + "-" + (k + 1) + ".trace");
+            // replay starts from cold, so its totals that "java sim.Trace" prints include convergence
+            Trace.Result replay = x.trace.replay(newModel(), null);
+            x.trace.addComment(name + " after convergence " + x.result);
+            x.trace.addComment(name + " in replay " + replay);
+            x.trace.write(file);
+            System.out.println("Saved " + file + ": " + x.result + ", in replay " + replay);
+        }
+    }
+
+    private Individual randomIndividual() {
+        Individual x = new Individual();
+        for (int i = 0; i < nn; i++)
+            for (int j = i + 1; j < nn; j++)
+                if (rnd.nextDouble() < LINK_PR)
+                    x.links[i * nn + j] = randomDist();
+        for (int k = 0; k < CHANGES; k++)
+            x.changes[k] = randomChange();
+        for (int k = 0; k < CHOICES; k++)
+            x.choices[k] = rnd.nextInt(Integer.MAX_VALUE);
+        return x;
+    }
+
+    private int randomDist() {
+        return MIN_D + rnd.nextInt(MAX_D - MIN_D + 1);
+    }
+
+    private int[] randomChange() {
+        int i = rnd.nextInt(nn - 1);
+        int j = i + 1 + rnd.nextInt(nn - i - 1);
+        return new int[] { i, j, rnd.nextBoolean() ? 0 : randomDist(), rnd.nextInt(MAX_GAP + 1) };
+    }
+
+    private List<Individual> nextGeneration(List<Individual> population) {
+        List<Individual> next = new ArrayList<>(population.subList(0, ELITE));
+        while (next.size() < POPULATION) {
+            Individual a = select(population);
+            Individual b = select(population);
+            Individual c = new Individual();
+            // topology and changes from one parent, choices are crossed at one point
+            Individual p = rnd.nextBoolean() ? a : b;
+            System.arraycopy(p.links, 0, c.links, 0, c.links.length);
+            for (int k = 0; k < CHANGES; k++)
+                c.changes[k] = p.changes[k].clone();
+            int cut = rnd.nextInt(CHOICES);
+            System.arraycopy(a.choices, 0, c.choices, 0, cut);
+            System.arraycopy(b.choices, cut, c.choices, cut, CHOICES - cut);
+            mutate(c);
+            next.add(c);
+        }
+        return next;
+    }
+
+    private Individual select(List<Individual> population) {
+        Individual best = null;
+        for (int k = 0; k < TOURNAMENT; k++) {
+            Individual x = population.get(rnd.nextInt(population.size()));
+            if (best == null || x.fitness() > best.fitness())
+                best = x;
+        }
+        return best;
+    }
+
+    private void mutate(Individual x) {
+        for (int i = 0; i < nn; i++)
+            for (int j = i + 1; j < nn; j++)
+                if (rnd.nextDouble() < MUTATION_PR / nn)
+                    x.links[i * nn + j] = x.links[i * nn + j] == 0 || rnd.nextBoolean() ? randomDist() : 0;
+        for (int k = 0; k < CHANGES; k++)
+            if (rnd.nextDouble() < MUTATION_PR)
+                x.changes[k] = randomChange();
+        // a random run of choices is redrawn
+        int from = rnd.nextInt(CHOICES);
+        int len = rnd.nextInt(64);
+        for (int k = from; k < from + len && k < CHOICES; k++)
+            x.choices[k] = rnd.nextInt(Integer.MAX_VALUE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private NetworkModel<AbstractMsg, AbstractNode<AbstractMsg>> newModel() {
+        NetworkModel<AbstractMsg, AbstractNode<AbstractMsg>> model =
+            NetworkModel.createNetworkModel(false, AlgoFactory.createAlgo(name));
+        model.getNode(NID.DEST);
+        return model;
+    }
+
+    // runs the schedule of the individual on a new model and records it as a trace
+    private void evaluate(Individual x) {
+        NetworkModel<AbstractMsg, AbstractNode<AbstractMsg>> model = newModel();
+        Trace trace = new Trace();
+        trace.add(Trace.Type.BATCH);
+        for (int i = 0; i < nn; i++)
+            for (int j = i + 1; j < nn; j++) {
+                int d = x.links[i * nn + j];
+                if (d != 0) {
+                    trace.add(Trace.Type.LINK, NID.getNID(i), NID.getNID(j), d);
+                    trace.add(Trace.Type.LINK, NID.getNID(j), NID.getNID(i), d);
+                }
+            }
+        trace.add(Trace.Type.COMMIT);
+        trace.add(Trace.Type.DRAIN);
+        Trace prefix = new Trace(trace.getEvents());
+        String failure = prefix.replay(model, null).failure;
+        long sent0 = model.getSentCount();
+        long processed0 = model.getProcessedCount();
+        long time0 = model.getTime();
+        int step = 0;
+        for (int k = 0; k < CHANGES && failure == null; k++) {
+            int[] change = x.changes[k];
+            NID a = NID.getNID(change[0]);
+            NID b = NID.getNID(change[1]);
+            if (change[2] == 0) {
+                trace.add(Trace.Type.REMOVE, a, b, 0);
+                model.removeLink(a, b);
+            } else {
+                trace.add(Trace.Type.LINK, a, b, change[2]);
+                trace.add(Trace.Type.LINK, b, a, change[2]);
+                model.updateLink(a, b, change[2]);
+                model.updateLink(b, a, change[2]);
+            }
+            // deliver between changes, and until quiescence after the last one
+            int gap = k < CHANGES - 1 ? change[3] : Integer.MAX_VALUE;
+            for (int n = 0; n < gap && !model.getMsgs().isEmpty() && step < MAX_STEPS; n++) {
+                int i = choose(model.getMsgs(), x.choices[step++ % CHOICES]);
+                AbstractMsg msg = model.getMsgs().get(i);
+                trace.add(Trace.Type.DELIVER, msg.from, msg.to, 0);
+                try {
+                    model.processMessage(i);
+                } catch (Throwable t) {
+                    failure = t.toString();
+                    break;
+                }
+            }
+        }
+        trace.add(Trace.Type.VERIFY);
+        if (failure == null)
+            failure = Trace.drain(model, processed0, null);
+        Trace.Result result = new Trace.Result();
+        result.sent = model.getSentCount() - sent0;
+        result.processed = model.getProcessedCount() - processed0;
+        result.time = model.getTime() - time0;
+        result.failure = failure != null ? failure : model.verifyInQuiescentState();
+        if (result.failure != null) {
+            result.failedAt = trace.size() - 1;
+            System.out.println("=== FAIL: " + result.failure + " ===");
+        }
+        x.trace = trace;
+        x.result = result;
+    }
+
+    // index of the message to deliver among all messages that are first over their links
+    private static int choose(List<AbstractMsg> msgs, int choice) {
+        int count = 0;
+        for (AbstractMsg msg : msgs)
+            if (msg.firstOverLink)
+                count++;
+        int k = choice % count;
+        for (int i = 0; i < msgs.size(); i++)
+            if (msgs.get(i).firstOverLink && k-- == 0)
+                return i;
+        throw new AssertionError();
+    }
+}
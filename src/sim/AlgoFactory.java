@@ -6,12 +6,28 @@ import java.util.Locale;
  * @author Roman Elizarov
  */
 public class AlgoFactory {
-    public static AbstractAlgo createAlgo(String name) {
+    /**
+     * Creates algorithm by its name. Name can be followed by an option after colon (like "DFB:SH"),
+     * that is passed to the algorithm constructor with a single string argument.
+     */
+    public static AbstractAlgo createAlgo(String spec) {
+        int k = spec.indexOf(':');
+        String name = k < 0 ? spec : spec.substring(0, k);
         try {
             Class<?> z = Class.forName("sim." + name.toLowerCase(Locale.US) + "." + name + "Algo");
-            return (AbstractAlgo) z.newInstance();
-        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+            if (k < 0)
+                return (AbstractAlgo) z.newInstance();
+            return (AbstractAlgo) z.getConstructor(String.class).newInstance(spec.substring(k + 1));
+        } catch (ReflectiveOperationException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Creates network model of the algorithm by its name (see {@link #createAlgo}) that does not log events.
+     */
+    @SuppressWarnings("unchecked")
+    public static <M extends AbstractMsg, N extends AbstractNode<M>> NetworkModel<M, N> createModel(String spec) {
+        return NetworkModel.createNetworkModel(false, createAlgo(spec));
+    }
 }
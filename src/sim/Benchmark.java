@@ -0,0 +1,165 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Compares the number of messages that different algorithms send on the same scenarios,
+ * virtual time it takes them to converge and CPU time they spend per link event.
+ * Takes a list of algorithm names (with options like "DFB:SH") as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class Benchmark<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int SEED = 1;
+
+    private static final int STRESS_NODES = 20;
+    private static final int STRESS_BATCHES = 1000;
+    private static final int MAX_UPDATES = 20;
+    private static final int MIN_D = 1;
+    private static final int MAX_D = 100;
+    private static final double REMOVE_LINK_PR = 0.25;
+
+    private static final int[] TOPOLOGY_SIZES = { 10, 20, 40 };
+    private static final int FLAPS = 20;
+
+    public static void main(String[] args) {
+        printHeader();
+        for (String name : args) {
+            new Benchmark<>(name).go();
+        }
+    }
+
+    static void printHeader() {
+        System.out.printf("%-16s %-12s %12s %12s %12s %12s%n", "Algo", "Scenario", "Messages", "Steps", "Time", "CPU us/event");
+    }
+
+    private final String name;
+    private final Map<String, Long> messages = new LinkedHashMap<>(); // sent messages by scenario
+    private AbstractAlgo<M, N> algo; // new one for each scenario
+
+    // counters at the start of the measured part of the scenario
+    private long sent0;
+    private long processed0;
+    private long time0;
+    private long nanos0;
+
+    public Benchmark(String name) {
+        this.name = name;
+    }
+
+    // runs all scenarios and returns the number of messages sent in each of them
+    Map<String, Long> go() {
+        stress();
+        for (int n : TOPOLOGY_SIZES)
+            chain(n, false);
+        for (int n : TOPOLOGY_SIZES)
+            chain(n, true);
+        for (int n : TOPOLOGY_SIZES)
+            flap(n);
+        return messages;
+    }
+
+    // random link updates in the same way as StressTest does, but the sequence of link updates is the same
+    // for every algorithm, because it is drawn from a separate random generator, and messages of each batch
+    // are delivered in the order of its own generator, so that a different number of messages in one batch
+    // does not change the order of delivery in all the following ones
+    private void stress() {
+        NetworkModel<M, N> model = newModel();
+        Random updates = new Random(SEED);
+        Random seeds = new Random(SEED);
+        int events = 0;
+        start(model);
+        for (int batchNo = 0; batchNo < STRESS_BATCHES; batchNo++) {
+            Random delivery = new Random(seeds.nextLong());
+            int nu = 1 + updates.nextInt(MAX_UPDATES);
+            events += nu;
+            for (int i = 0; i < nu; i++) {
+                NID from;
+                NID to;
+                do {
+                    from = NID.getNID(updates.nextInt(STRESS_NODES));
+                    to = NID.getNID(updates.nextInt(STRESS_NODES));
+                } while (from.equals(to));
+                if (updates.nextDouble() < REMOVE_LINK_PR)
+                    model.removeLink(from, to);
+                else
+                    model.updateLink(from, to, MIN_D + updates.nextInt(MAX_D - MIN_D + 1));
+            }
+            RandomNetwork.processAll(model, delivery);
+        }
+        report("stress", model, events);
+    }
+
+    // chain of n nodes to destination with bidirectional links, link at destination is cut after convergence,
+    // when ring is true then the last node is also linked to the first one, so that chain is closed into a ring
+    private void chain(int n, boolean ring) {
+        NetworkModel<M, N> model = newModel();
+        Random delivery = new Random(SEED);
+        model.beginBatch();
+        for (int i = 1; i <= n; i++)
+            RandomNetwork.biLink(model, NID.getNID(i), NID.getNID(i - 1), 1);
+        if (ring)
+            RandomNetwork.biLink(model, NID.getNID(n), NID.getNID(1), 1);
+        model.commitBatch();
+        RandomNetwork.processAll(model, delivery);
+        start(model);
+        model.removeLink(NID.getNID(1), NID.DEST);
+        RandomNetwork.processAll(model, delivery);
+        report((ring ? "ring-" : "chain-") + n, model, 1);
+    }
+
+    // ring of n nodes with two links to destination, the first one is flapping, while the last one stays up,
+    // only n messages are processed between flaps
+    private void flap(int n) {
+        NetworkModel<M, N> model = newModel();
+        Random delivery = new Random(SEED);
+        model.beginBatch();
+        for (int i = 1; i <= n; i++)
+            RandomNetwork.biLink(model, NID.getNID(i), NID.getNID(i - 1), 1);
+        RandomNetwork.biLink(model, NID.getNID(n), NID.DEST, 1);
+        model.commitBatch();
+        RandomNetwork.processAll(model, delivery);
+        start(model);
+        for (int k = 0; k < FLAPS; k++) {
+            if (k % 2 == 0)
+                model.removeLink(NID.getNID(1), NID.DEST);
+            else
+                RandomNetwork.biLink(model, NID.getNID(1), NID.DEST, 1);
+            for (int i = 0; i < n && !model.getMsgs().isEmpty(); i++)
+                RandomNetwork.processRandomMessage(model, delivery);
+        }
+        RandomNetwork.processAll(model, delivery);
+        report("flap-" + n, model, FLAPS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private NetworkModel<M, N> newModel() {
+        algo = AlgoFactory.createAlgo(name);
+        return NetworkModel.createNetworkModel(false, algo);
+    }
+
+    private void start(NetworkModel<M, N> model) {
+        sent0 = model.getSentCount();
+        processed0 = model.getProcessedCount();
+        time0 = model.getTime();
+        algo.resetStats();
+        nanos0 = System.nanoTime();
+    }
+
+    private void report(String scenario, NetworkModel<M, N> model, int events) {
+        long nanos = System.nanoTime() - nanos0;
+        messages.put(scenario, model.getSentCount() - sent0);
+        System.out.printf("%-16s %-12s %12d %12d %12d %12.1f%n", name, scenario,
+            messages.get(scenario), model.getProcessedCount() - processed0, model.getTime() - time0,
+            nanos / 1000.0 / events);
+        for (String stat : algo.getStats(model.getNodes()))
+            System.out.printf("%-16s %-12s %s%n", "", "", stat);
+        verify(model);
+    }
+
+    private void verify(NetworkModel<M, N> model) {
+        String text = model.verifyInQuiescentState();
+        if (text != null)
+            System.out.println("=== FAIL: " + text + " ===");
+    }
+}
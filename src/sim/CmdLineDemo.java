@@ -63,5 +63,6 @@ public class CmdLineDemo<M extends AbstractMsg, N extends AbstractNode<M>> {
         System.out.println("Type: <from> <to> <dist> to add link");
         System.out.println("Use dist 0 to remove link");
         System.out.println("Node '" + NID.DEST + "' is a destination");
+        System.out.println("Events are logged to " + EventLog.getDefaultFile() + ", use sim.EventLogViewer to see them");
     }
 }
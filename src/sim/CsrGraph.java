@@ -0,0 +1,122 @@
+package sim;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Snapshot of reverse links graph in compressed sparse row int arrays with parallel delta-stepping
+ * computation of true distances to destination. It is used to verify large networks from scratch.
+ *
+ * @author Roman Elizarov
+ */
+class CsrGraph {
+    final NID[] ids; // node ids by index in the order of nodes
+    private final int[] start; // incoming links of node k are at start[k] until start[k + 1]
+    private final int[] from; // index of the node that link comes from
+    private final int[] d; // link distance
+    private final int dest; // index of the destination node, -1 if it does not exist
+    private final int delta; // bucket width for delta-stepping, links longer than it are heavy
+
+    CsrGraph(Collection<? extends AbstractNode<?>> nodes) {
+        AbstractNode<?>[] arr = nodes.toArray(new AbstractNode<?>[0]);
+        int n = arr.length;
+        ids = new NID[n];
+        start = new int[n + 1];
+        Map<NID, Integer> index = new HashMap<>(n * 2);
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            ids[k] = arr[k].getId();
+            index.put(ids[k], k);
+            m += arr[k].in.size();
+        }
+        from = new int[m];
+        d = new int[m];
+        long sum = 0;
+        m = 0;
+        for (int k = 0; k < n; k++) {
+            start[k] = m;
+            for (NID j : arr[k].in) {
+                int l = index.get(j);
+                from[m] = l;
+                d[m] = arr[l].ln.get(ids[k]);
+                sum += d[m++];
+            }
+        }
+        start[n] = m;
+        dest = index.getOrDefault(NID.DEST, -1);
+        delta = m == 0 ? 1 : (int) Math.max(1, sum / m); // average link distance
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    // true distances to destination by node index, computed in parallel with delta-stepping
+    int[] distances() {
+        int n = ids.length;
+        AtomicIntegerArray dist = new AtomicIntegerArray(n);
+        for (int k = 0; k < n; k++)
+            dist.set(k, DistUtil.INF);
+        TreeMap<Integer, IntStream.Builder> buckets = new TreeMap<>();
+        if (dest >= 0) {
+            dist.set(dest, 0);
+            buckets.put(0, IntStream.builder().add(dest));
+        }
+        while (!buckets.isEmpty()) {
+            int b = buckets.firstKey();
+            // settle bucket with light links, they can add more nodes to the same bucket
+            Set<Integer> settled = new HashSet<>();
+            int[] frontier = current(buckets.remove(b), dist, b);
+            while (frontier.length > 0) {
+                for (int v : frontier)
+                    settled.add(v);
+                int[] relaxed = IntStream.of(frontier).parallel()
+                    .flatMap(v -> relax(v, dist, true))
+                    .toArray();
+                distribute(relaxed, dist, buckets);
+                IntStream.Builder more = buckets.remove(b);
+                frontier = more == null ? new int[0] : current(more, dist, b);
+            }
+            // heavy links once from all settled nodes
+            int[] relaxed = settled.parallelStream()
+                .flatMapToInt(v -> relax(v, dist, false))
+                .toArray();
+            distribute(relaxed, dist, buckets);
+        }
+        int[] result = new int[n];
+        for (int k = 0; k < n; k++)
+            result[k] = dist.get(k);
+        return result;
+    }
+
+    // distinct nodes from the bucket that still belong to it
+    private int[] current(IntStream.Builder bucket, AtomicIntegerArray dist, int b) {
+        return bucket.build().distinct().filter(v -> dist.get(v) / delta == b).toArray();
+    }
+
+    private void distribute(int[] relaxed, AtomicIntegerArray dist, TreeMap<Integer, IntStream.Builder> buckets) {
+        for (int v : relaxed)
+            buckets.computeIfAbsent(dist.get(v) / delta, $ -> IntStream.builder()).add(v);
+    }
+
+    // relaxes light or heavy incoming links of node v, returns nodes whose distance had improved
+    private IntStream relax(int v, AtomicIntegerArray dist, boolean light) {
+        int dv = dist.get(v);
+        IntStream.Builder improved = IntStream.builder();
+        for (int e = start[v]; e < start[v + 1]; e++) {
+            if (d[e] <= delta != light)
+                continue;
+            int u = from[e];
+            int nd = dv + d[e];
+            int old;
+            while (nd < (old = dist.get(u))) {
+                if (dist.compareAndSet(u, old, nd)) {
+                    improved.add(u);
+                    break;
+                }
+            }
+        }
+        return improved.build();
+    }
+}
@@ -0,0 +1,151 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * True distances from all nodes to destination that are maintained incrementally as links change.
+ * Shortest path tree toward destination is kept, when links of tree nodes change their subtrees are
+ * recomputed with Dijkstra from the rest of the tree, shorter links are relaxed from their ends.
+ *
+ * @author Roman Elizarov
+ */
+class DistOracle {
+    private final Map<NID, ? extends AbstractNode<?>> nodes; // links are read from nodes
+
+    private Map<NID, Integer> dist = new HashMap<>(); // distance to destination of reachable nodes
+    private Map<NID, NID> parent = new HashMap<>(); // next node on the shortest path to destination
+    private Map<NID, Set<NID>> children = new HashMap<>(); // reverse of parent
+
+    DistOracle(Map<NID, ? extends AbstractNode<?>> nodes) {
+        this.nodes = nodes;
+        dist.put(NID.DEST, 0);
+    }
+
+    // copy of this oracle that reads links from a given map of nodes with the same links
+    DistOracle copy(Map<NID, ? extends AbstractNode<?>> nodes) {
+        DistOracle oracle = new DistOracle(nodes);
+        oracle.dist.putAll(dist);
+        oracle.parent.putAll(parent);
+        children.forEach((p, set) -> oracle.children.put(p, new HashSet<>(set)));
+        return oracle;
+    }
+
+    int getDist(NID i) {
+        return DistUtil.get(dist, i);
+    }
+
+    Map<NID, Integer> getDistances() {
+        return Collections.unmodifiableMap(dist);
+    }
+
+    // recomputes all distances from scratch
+    void rebuild() {
+        dist.clear();
+        parent.clear();
+        children.clear();
+        dist.put(NID.DEST, 0);
+        PriorityQueue<QE> queue = new PriorityQueue<>();
+        queue.add(new QE(NID.DEST, 0));
+        dijkstra(queue, new HashMap<>());
+    }
+
+    // updates distances after links from -> to have changed (were updated, created or removed),
+    // sets indices of nodes whose distances had changed
+    void linksChanged(Map<NID, Set<NID>> changed, BitSet updated) {
+        // subtrees that lost or changed their tree link are recomputed
+        Set<NID> lost = new HashSet<>();
+        changed.forEach((from, set) -> {
+            NID p = parent.get(from);
+            if (p != null && set.contains(p))
+                collectSubtree(from, lost);
+        });
+        Map<NID, Integer> old = new HashMap<>(); // distances before the change of all nodes that were changed
+        for (NID u : lost) {
+            old.put(u, dist.remove(u));
+            setParent(u, null);
+        }
+        PriorityQueue<QE> queue = new PriorityQueue<>();
+        // reattach lost nodes via their remaining outgoing links
+        for (NID u : lost)
+            nodes.get(u).ln.keySet().forEach(w -> relax(u, w, queue, old));
+        // new or shorter links
+        changed.forEach((from, set) -> set.forEach(to -> {
+            AbstractNode<?> node = nodes.get(from);
+            if (node != null && node.ln.containsKey(to))
+                relax(from, to, queue, old);
+        }));
+        dijkstra(queue, old);
+        old.forEach((u, d) -> {
+            if (!Objects.equals(d, dist.get(u)))
+                updated.set(u.getIndex());
+        });
+    }
+
+    // node without links is removed
+    void removeNode(NID i) {
+        assert !parent.containsKey(i) && !children.containsKey(i) : "Node links must be removed first";
+        if (!i.equals(NID.DEST))
+            dist.remove(i);
+    }
+
+    private void dijkstra(PriorityQueue<QE> queue, Map<NID, Integer> old) {
+        while (!queue.isEmpty()) {
+            QE e = queue.remove();
+            if (e.d != dist.get(e.v))
+                continue; // outdated queue entry
+            AbstractNode<?> node = nodes.get(e.v);
+            if (node != null)
+                for (NID p : node.in)
+                    relax(p, e.v, queue, old);
+        }
+    }
+
+    private void relax(NID u, NID w, PriorityQueue<QE> queue, Map<NID, Integer> old) {
+        Integer dw = dist.get(w);
+        if (dw == null)
+            return;
+        int nd = DistUtil.sumDist(dw, nodes.get(u).ln.get(w));
+        if (nd < DistUtil.get(dist, u)) {
+            if (!old.containsKey(u))
+                old.put(u, dist.get(u));
+            dist.put(u, nd);
+            setParent(u, w);
+            queue.add(new QE(u, nd));
+        }
+    }
+
+    private void collectSubtree(NID u, Set<NID> set) {
+        if (!set.add(u))
+            return;
+        Set<NID> cs = children.get(u);
+        if (cs != null)
+            cs.forEach(c -> collectSubtree(c, set));
+    }
+
+    private void setParent(NID u, NID p) {
+        NID old = p == null ? parent.remove(u) : parent.put(u, p);
+        if (old != null) {
+            Set<NID> cs = children.get(old);
+            cs.remove(u);
+            if (cs.isEmpty())
+                children.remove(old);
+        }
+        if (p != null)
+            children.computeIfAbsent(p, $ -> new HashSet<>()).add(u);
+    }
+
+    private static class QE implements Comparable<QE> {
+        final NID v;
+        final int d;
+
+        QE(NID v, int d) {
+            this.v = v;
+            this.d = d;
+        }
+
+        @Override
+        public int compareTo(QE o) {
+            return Integer.compare(d, o.d);
+        }
+    }
+}
@@ -20,6 +20,11 @@ public class DistUtil {
             map.put(k, d);
     }
 
+    public static int get(Map<NID, Map<NID, Integer>> links, NID from, NID to) {
+        Map<NID, Integer> map = links.get(from);
+        return map == null ? INF : get(map, to);
+    }
+
     public static String d2s(int d) {
         return d == INF ? "INF" : "" + d;
     }
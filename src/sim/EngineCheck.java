@@ -0,0 +1,109 @@
+package sim;
+
+import sim.dfb.DFBAlgo;
+import sim.dfb.DFBEngine;
+import sim.dfb.DFBMode;
+import sim.dfb.DFBMsg;
+import sim.dfb.DFBNode;
+
+import java.util.*;
+
+/**
+ * Cross-checks struct-of-arrays {@link DFBEngine} against object-based {@link DFBAlgo} on random networks
+ * with cold start and a series of random link removals, additions and distance changes, messages are processed
+ * in the order they were sent in both.
+ * Then runs the engine alone on a large network and reports its time.
+ * Takes mode name (PLAIN, SH or PR) and optional number of nodes for the large network as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class EngineCheck {
+    private static final int SEED = 1;
+    private static final int CHECKS = 1000;
+    private static final int MAX_NODES = 50;
+    private static final int CHANGES = 10;
+    private static final int MIN_D = 1;
+    private static final int MAX_D = 100;
+    private static final int LARGE_NODES = 1_000_000;
+
+    public static void main(String[] args) {
+        DFBMode mode = args.length > 0 ? DFBMode.valueOf(args[0]) : DFBMode.PLAIN;
+        int large = args.length > 1 ? Integer.parseInt(args[1]) : LARGE_NODES;
+        Random rnd = new Random(SEED);
+        System.out.println("Checking DFB engine in " + mode + " mode");
+        for (int k = 1; k <= CHECKS; k++) {
+            check(mode, new RandomNetwork(2 + rnd.nextInt(MAX_NODES - 1), 1, MIN_D, MAX_D, rnd).getLinks(), rnd);
+            if (k % 10 == 0)
+                System.out.print('.');
+        }
+        System.out.println();
+        System.out.println("=== PASSED SUCCESSFULLY ===");
+        Map<NID, Map<NID, Integer>> links = new RandomNetwork(large, 1, MIN_D, MAX_D, rnd).getLinks();
+        long time = System.nanoTime();
+        DFBEngine engine = new DFBEngine(mode, links);
+        engine.start();
+        engine.processAll();
+        System.out.printf("Converged %d nodes with %d messages in %.1f s%n",
+            engine.size(), engine.getSentCount(), (System.nanoTime() - time) / 1e9);
+    }
+
+    private static void check(DFBMode mode, Map<NID, Map<NID, Integer>> links, Random rnd) {
+        NetworkModel<DFBMsg, DFBNode> model = NetworkModel.createNetworkModel(false, new DFBAlgo(mode, 0));
+        model.getNode(NID.DEST);
+        model.beginBatch();
+        links.forEach((from, map) -> map.forEach((to, d) -> model.updateLink(from, to, d)));
+        model.commitBatch();
+        DFBEngine engine = new DFBEngine(mode, links);
+        engine.start();
+        compare(model, engine);
+        List<NID> nodes = new ArrayList<>(model.getNIDs());
+        engine.removeLink(NID.DEST, NID.getNID(nodes.size())); // unknown node is ignored
+        for (int k = 0; k < CHANGES; k++) {
+            NID a = nodes.get(rnd.nextInt(nodes.size()));
+            List<NID> neighbours = new ArrayList<>(model.getNode(a).getOutgoingLinks().keySet());
+            int d = MIN_D + rnd.nextInt(MAX_D - MIN_D + 1);
+            int op = rnd.nextInt(3);
+            if (op == 0 && !neighbours.isEmpty() && !a.equals(NID.DEST)) {
+                // remove link, but not at destination where the whole network can count to infinity for long
+                NID b = neighbours.get(rnd.nextInt(neighbours.size()));
+                model.removeLink(a, b);
+                engine.removeLink(a, b);
+            } else if (op == 1 && !neighbours.isEmpty()) {
+                // change distance in one direction
+                NID b = neighbours.get(rnd.nextInt(neighbours.size()));
+                model.updateLink(a, b, d);
+                engine.updateLink(a, b, d);
+            } else {
+                // add link to random node in both directions, it can be a new link, a removed one or an existing one
+                NID b = nodes.get(rnd.nextInt(nodes.size()));
+                if (a.equals(b))
+                    continue;
+                model.updateLink(a, b, d);
+                engine.updateLink(a, b, d);
+                model.updateLink(b, a, d);
+                engine.updateLink(b, a, d);
+            }
+            compare(model, engine);
+        }
+    }
+
+    private static void compare(NetworkModel<DFBMsg, DFBNode> model, DFBEngine engine) {
+        while (!model.getMsgs().isEmpty())
+            model.processMessage(0); // the oldest message is always first over its link
+        engine.processAll();
+        if (model.getSentCount() != engine.getSentCount() || model.getProcessedCount() != engine.getProcessedCount())
+            fail("Engine sent " + engine.getSentCount() + " and processed " + engine.getProcessedCount() +
+                " messages, while model sent " + model.getSentCount() + " and processed " + model.getProcessedCount());
+        for (DFBNode node : model.getNodes()) {
+            String text = node.verifyQuiescentDistance(engine.getDist(node.getId()));
+            if (text != null)
+                fail("Engine distance mismatch: " + text);
+        }
+    }
+
+    private static void fail(String s) {
+        System.out.println();
+        System.out.println("=== FAIL: " + s + " ===");
+        System.exit(1);
+    }
+}
@@ -0,0 +1,312 @@
+package sim;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Structured log of model events. Events are typed records that are put into a lock-free ring buffer
+ * by any number of threads and are written to a binary file by a background writer thread.
+ * Records are formatted to text only when the log is viewed, see {@link EventLogViewer}.
+ *
+ * <p>Level is set for each event type: events of {@link Level#OFF} type are not recorded at all,
+ * {@link Level#BASIC} records keep only node ids, distance or count, and the kind of message,
+ * while {@link Level#DETAIL} records also keep text that is produced by a supplier (like message description).
+ * The text is produced in the thread that records the event, because messages and links that it describes
+ * can change afterwards, so only DETAIL records cost formatting on the model thread.
+ * When the writer thread fails, events are dropped instead of waiting for it and the failure is thrown
+ * by {@link #flush} and {@link #close}.
+ * Default log writes to a file that is set with "sim.log.file" system property ("events.simlog" by default)
+ * and takes levels from "sim.log.levels" system property as a list like "SEND_MSG=OFF,PROCESS_MSG=DETAIL".
+ *
+ * @author Roman Elizarov
+ */
+public class EventLog implements Closeable {
+    static final int MAGIC = 0x53494d4c; // "SIML"
+    static final int VERSION = 1;
+
+    // tags of records in the file
+    static final int TAG_NID = 0; // index, name
+    static final int TAG_NAME = 1; // id, name
+    static final int TAG_EVENT = 2; // type, time, from, to, d, name, text
+
+    private static final int CAPACITY = 1 << 16; // number of slots in the ring buffer
+    private static final long IDLE_NANOS = 1_000_000; // writer thread sleeps when there are no events
+
+    public enum Type {
+        UPDATE_LINK, // from, to, d
+        REMOVE_LINK, // from, to
+        COMMIT_BATCH, // d = number of link changes, text = changes
+        LOAD_CONVERGED, // d = number of nodes with links, text = links
+        SEND_MSG, // from, to, name = message kind, text = description
+        SCHEDULE_TIMER, // from, to, d = delay, name = message kind, text = description
+        PROCESS_MSG, // the same as SEND_MSG
+        FIRE_TIMER, // the same as SCHEDULE_TIMER
+        UPDATE_ALGO // name = algorithm name
+    }
+
+    public enum Level { OFF, BASIC, DETAIL }
+
+    private static EventLog defaultLog;
+
+    private final Level[] levels = new Level[Type.values().length];
+
+    // --- names of message kinds and algorithms by id ---
+
+    private final Map<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    private final AtomicInteger nameCount = new AtomicInteger();
+    private final ClassValue<Integer> kinds = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return nameId(type.getSimpleName());
+        }
+    };
+
+    // --- ring buffer, slot of event with sequence number seq is seq & (CAPACITY - 1) ---
+
+    private final AtomicLong next = new AtomicLong(); // sequence number of the next event
+    private final AtomicLong consumed = new AtomicLong(); // all events before it were written
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY); // seq of event in slot, -1 if none
+    private final int[] types = new int[CAPACITY];
+    private final long[] times = new long[CAPACITY];
+    private final NID[] froms = new NID[CAPACITY];
+    private final NID[] tos = new NID[CAPACITY];
+    private final int[] ds = new int[CAPACITY];
+    private final int[] kindIds = new int[CAPACITY];
+    private final String[] texts = new String[CAPACITY];
+
+    // --- writer ---
+
+    private final DataOutputStream out;
+    private final Thread writer;
+    private volatile boolean closed;
+    private final BitSet writtenNIDs = new BitSet();
+    private final BitSet writtenNames = new BitSet();
+    private IOException failure;
+
+    public EventLog(File file) throws IOException {
+        Arrays.fill(levels, Level.BASIC);
+        for (int k = 0; k < CAPACITY; k++)
+            published.set(k, -1);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writer = new Thread(this::writeLoop, "EventLog-" + file.getName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // log that models use when they are created with log turned on, it is closed on exit
+    public static synchronized EventLog getDefault() {
+        if (defaultLog == null) {
+            try {
+                defaultLog = new EventLog(getDefaultFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            defaultLog.setLevels(System.getProperty("sim.log.levels", ""));
+            EventLog log = defaultLog;
+            Runtime.getRuntime().addShutdownHook(new Thread(log::closeQuietly));
+        }
+        return defaultLog;
+    }
+
+    public static File getDefaultFile() {
+        return new File(System.getProperty("sim.log.file", "events.simlog"));
+    }
+
+    public Level getLevel(Type type) {
+        return levels[type.ordinal()];
+    }
+
+    public void setLevel(Type type, Level level) {
+        levels[type.ordinal()] = level;
+    }
+
+    // sets levels from a list like "SEND_MSG=OFF,PROCESS_MSG=DETAIL", "ALL=DETAIL" sets level of all types
+    public void setLevels(String spec) {
+        for (String item : spec.split(",")) {
+            if (item.trim().isEmpty())
+                continue;
+            String[] s = item.trim().split("=");
+            if (s.length != 2)
+                throw new IllegalArgumentException("Invalid level setting: " + item);
+            Level level = Level.valueOf(s[1]);
+            if (s[0].equals("ALL"))
+                Arrays.fill(levels, level);
+            else
+                setLevel(Type.valueOf(s[0]), level);
+        }
+    }
+
+    public boolean isEnabled(Type type) {
+        return levels[type.ordinal()] != Level.OFF;
+    }
+
+    // --- events ---
+
+    public void link(Type type, long time, NID from, NID to, int d) {
+        if (isEnabled(type))
+            add(type, time, from, to, d, -1, null);
+    }
+
+    public void msg(Type type, long time, AbstractMsg msg) {
+        Level level = levels[type.ordinal()];
+        if (level != Level.OFF)
+            add(type, time, msg.from, msg.to, msg.delay, kinds.get(msg.getClass()),
+                level == Level.DETAIL ? msg.getDescription() : null);
+    }
+
+    public void count(Type type, long time, int count, Supplier<String> detail) {
+        Level level = levels[type.ordinal()];
+        if (level != Level.OFF)
+            add(type, time, null, null, count, -1, level == Level.DETAIL ? detail.get() : null);
+    }
+
+    public void name(Type type, long time, String name) {
+        if (isEnabled(type))
+            add(type, time, null, null, 0, nameId(name), null);
+    }
+
+    private int nameId(String name) {
+        return nameIds.computeIfAbsent(name, n -> {
+            int id = nameCount.getAndIncrement();
+            names.put(id, n);
+            return id;
+        });
+    }
+
+    private void add(Type type, long time, NID from, NID to, int d, int kind, String text) {
+        assert !closed : "Event log is closed";
+        long seq = next.getAndIncrement();
+        while (seq - consumed.get() >= CAPACITY) {
+            if (!writer.isAlive())
+                return; // writer had failed -- drop the event
+            LockSupport.parkNanos(IDLE_NANOS); // ring buffer is full -- wait for writer
+        }
+        int k = (int) seq & (CAPACITY - 1);
+        types[k] = type.ordinal();
+        times[k] = time;
+        froms[k] = from;
+        tos[k] = to;
+        ds[k] = d;
+        kindIds[k] = kind;
+        texts[k] = text;
+        published.lazySet(k, seq);
+    }
+
+    // waits until all events that were added before are written to the file
+    public void flush() throws IOException {
+        long seq = next.get();
+        while (consumed.get() < seq && writer.isAlive())
+            LockSupport.parkNanos(IDLE_NANOS);
+        checkFailure();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            System.err.println("Failed to write event log: " + e);
+        }
+    }
+
+    private synchronized void checkFailure() throws IOException {
+        if (failure != null)
+            throw failure;
+    }
+
+    // --- writer thread ---
+
+    private void writeLoop() {
+        try {
+            long seq = consumed.get();
+            while (true) {
+                int k = (int) seq & (CAPACITY - 1);
+                if (published.get(k) == seq) {
+                    write(k);
+                    consumed.lazySet(++seq);
+                    continue;
+                }
+                out.flush(); // the viewer sees all events so far
+                if (closed && seq == next.get())
+                    break;
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+            out.close();
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+        }
+    }
+
+    private void write(int k) throws IOException {
+        NID from = froms[k];
+        NID to = tos[k];
+        int kind = kindIds[k];
+        String text = texts[k];
+        // release references and write definitions that events refer to first
+        froms[k] = null;
+        tos[k] = null;
+        texts[k] = null;
+        writeNID(from);
+        writeNID(to);
+        if (kind >= 0 && !writtenNames.get(kind)) {
+            writtenNames.set(kind);
+            out.writeByte(TAG_NAME);
+            out.writeInt(kind);
+            writeString(names.get(kind));
+        }
+        out.writeByte(TAG_EVENT);
+        out.writeByte(types[k]);
+        out.writeLong(times[k]);
+        out.writeInt(from == null ? -1 : from.getIndex());
+        out.writeInt(to == null ? -1 : to.getIndex());
+        out.writeInt(ds[k]);
+        out.writeInt(kind);
+        out.writeBoolean(text != null);
+        if (text != null)
+            writeString(text);
+    }
+
+    private void writeNID(NID i) throws IOException {
+        if (i == null || writtenNIDs.get(i.getIndex()))
+            return;
+        writtenNIDs.set(i.getIndex());
+        out.writeByte(TAG_NID);
+        out.writeInt(i.getIndex());
+        writeString(i.toString());
+    }
+
+    // length-prefixed UTF-8, unlike writeUTF it is not limited to 64K
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
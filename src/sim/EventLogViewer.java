@@ -0,0 +1,95 @@
+package sim;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Prints binary event log that is written by {@link EventLog} as text, one event per line.
+ * Takes log file name and an optional list of event types to show as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class EventLogViewer {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java sim.EventLogViewer <file> [<type> ...]");
+            return;
+        }
+        Set<EventLog.Type> show = EnumSet.allOf(EventLog.Type.class);
+        if (args.length > 1) {
+            show.clear();
+            for (int k = 1; k < args.length; k++)
+                show.add(EventLog.Type.valueOf(args[k]));
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args[0])))) {
+            new EventLogViewer(show).view(in, new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out))));
+        }
+    }
+
+    private final Set<EventLog.Type> show;
+    private final Map<Integer, String> nids = new HashMap<>();
+    private final Map<Integer, String> names = new HashMap<>();
+
+    public EventLogViewer(Set<EventLog.Type> show) {
+        this.show = show;
+    }
+
+    public void view(DataInputStream in, PrintWriter out) throws IOException {
+        if (in.readInt() != EventLog.MAGIC)
+            throw new IOException("Not an event log");
+        int version = in.readInt();
+        if (version != EventLog.VERSION)
+            throw new IOException("Unsupported event log version " + version);
+        int tag;
+        while ((tag = in.read()) >= 0) {
+            switch (tag) {
+                case EventLog.TAG_NID:
+                    nids.put(in.readInt(), EventLog.readString(in));
+                    break;
+                case EventLog.TAG_NAME:
+                    names.put(in.readInt(), EventLog.readString(in));
+                    break;
+                case EventLog.TAG_EVENT:
+                    EventLog.Type type = EventLog.Type.values()[in.readByte()];
+                    long time = in.readLong();
+                    String from = nids.get(in.readInt());
+                    String to = nids.get(in.readInt());
+                    int d = in.readInt();
+                    String name = names.get(in.readInt());
+                    String text = in.readBoolean() ? EventLog.readString(in) : null;
+                    if (show.contains(type))
+                        out.println("[" + time + "] " + format(type, from, to, d, name, text));
+                    break;
+                default:
+                    throw new IOException("Corrupted event log, tag " + tag);
+            }
+        }
+        out.flush();
+    }
+
+    private static String format(EventLog.Type type, String from, String to, int d, String name, String text) {
+        String msg = from + "->" + to + " " + (text != null ? text : name);
+        switch (type) {
+            case UPDATE_LINK:
+                return "Updating link " + from + "->" + to + " d=" + DistUtil.d2s(d);
+            case REMOVE_LINK:
+                return "Removing link " + from + "<->" + to;
+            case COMMIT_BATCH:
+                return "Committing batch of " + d + " changes" + (text != null ? " " + text : "");
+            case LOAD_CONVERGED:
+                return "Loading converged state of " + d + " nodes" + (text != null ? " " + text : "");
+            case SEND_MSG:
+                return "Sending message " + msg;
+            case SCHEDULE_TIMER:
+                return "Scheduling timer " + msg + " delay=" + d;
+            case PROCESS_MSG:
+                return "Processing message " + msg;
+            case FIRE_TIMER:
+                return "Firing timer " + msg;
+            case UPDATE_ALGO:
+                return "Updating algo to " + name;
+            default:
+                throw new AssertionError();
+        }
+    }
+}
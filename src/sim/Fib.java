@@ -0,0 +1,49 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Forwarding information base compiled from the current routing state of all nodes. Next hops of each node
+ * (LINK_ROUTE links, or LINK_BOLD links of successor set in multipath mode) are kept in an immutable
+ * {@link NextHopTable} that is updated on {@link #compile} only for nodes that changed, sharing the chunks without
+ * them with the previous table, and is published with a volatile write. Lookups read the last published table
+ * and never block the thread that runs the model, so they can be done from any number of threads while
+ * simulation goes on. {@link #compile} must be called from the thread that changes the model.
+ *
+ * @author Roman Elizarov
+ */
+public class Fib {
+    private final NetworkModel<?, ?> model;
+    private final int flag;
+    private final Set<NID> changed = new HashSet<>(); // nodes to recompile next hops of
+
+    private volatile NextHopTable table = NextHopTable.EMPTY;
+
+    public Fib(NetworkModel<?, ?> model, boolean multipath) {
+        this.model = model;
+        flag = multipath ? AbstractNode.LINK_BOLD : AbstractNode.LINK_ROUTE;
+        for (AbstractNode<?> node : model.getNodes())
+            changed.add(node.getId());
+        model.addChangeListener(changed::add);
+        compile();
+    }
+
+    // recompiles next hops of nodes that changed and publishes a new table, returns false when nothing changed
+    public boolean compile() {
+        if (changed.isEmpty())
+            return false;
+        table = table.update(model, changed, flag);
+        changed.clear();
+        return true;
+    }
+
+    // the last published table, can be called from any thread
+    public NextHopTable getTable() {
+        return table;
+    }
+
+    // next hop index of node by the last published table, see NextHopTable.nextHop
+    public int nextHop(int node, int hash) {
+        return table.nextHop(node, hash);
+    }
+}
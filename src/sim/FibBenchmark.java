@@ -0,0 +1,131 @@
+package sim;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Looks up next hops in {@link Fib} from reader threads while the model runs. A random network starts in
+ * converged state, then random links fail and recover one by one while messages are processed in random order,
+ * and the FIB is compiled after every processed message. Reports lookup rate of reader threads, the number of
+ * published tables and compile time, and lookup rate of calling {@code getLinkFlags} of nodes for comparison.
+ * Compiled next hops are checked against nodes at the end.
+ * Takes a list of algorithm names (with options like "DFB:SH") as arguments, next hops are successor sets
+ * for loop-free algorithms.
+ *
+ * @author Roman Elizarov
+ */
+public class FibBenchmark<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int NODES = 200;
+    private static final int CHANGES = 200;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int DIRECT_LOOKUPS = 1_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("%-16s %-10s %8s %12s %10s %10s %12s %10s %10s%n", "Algo", "Next hops", "Threads",
+            "Lookups", "M/s", "Tables", "Compile us", "Direct M/s", "Mismatch");
+        for (String name : args)
+            new FibBenchmark<>(name).go();
+    }
+
+    private final String name;
+    private long compiles; // that published a new table
+    private long compileNanos;
+
+    public FibBenchmark(String name) {
+        this.name = name;
+    }
+
+    private void go() throws InterruptedException {
+        NetworkModel<M, N> model = AlgoFactory.createModel(name);
+        boolean multipath = model.getAlgo().isLoopFree();
+        RandomNetwork network = new RandomNetwork(NODES, new Random(RandomNetwork.SEED));
+        Random order = new Random(RandomNetwork.SEED);
+        network.converge(model);
+        double direct = directLookups(model, multipath ? AbstractNode.LINK_BOLD : AbstractNode.LINK_ROUTE);
+        Fib fib = new Fib(model, multipath);
+        // --- readers ---
+        AtomicBoolean done = new AtomicBoolean();
+        long[] lookups = new long[THREADS];
+        long[] checksums = new long[THREADS];
+        Thread[] readers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int id = t;
+            readers[t] = new Thread(() -> {
+                int x = id + 1; // xorshift state
+                long count = 0;
+                long sum = 0;
+                while (!done.get()) {
+                    NextHopTable table = fib.getTable();
+                    int size = table.size();
+                    for (int k = 0; k < 1024; k++) {
+                        x ^= x << 13;
+                        x ^= x >>> 17;
+                        x ^= x << 5;
+                        sum += table.nextHop((x & 0x7fffffff) % size, x);
+                    }
+                    count += 1024;
+                }
+                lookups[id] = count;
+                checksums[id] = sum;
+            }, "FibReader-" + t);
+        }
+        long t0 = System.nanoTime();
+        for (Thread reader : readers)
+            reader.start();
+        // --- simulation ---
+        network.churn(model, CHANGES, order, () -> {
+            long c0 = System.nanoTime();
+            if (fib.compile()) {
+                compiles++;
+                compileNanos += System.nanoTime() - c0;
+            }
+        });
+        done.set(true);
+        for (Thread reader : readers)
+            reader.join();
+        long nanos = System.nanoTime() - t0;
+        long total = Arrays.stream(lookups).sum();
+        System.out.printf("%-16s %-10s %8d %12d %10.1f %10d %12.1f %10.1f %10d%n", name,
+            multipath ? "successor" : "route", THREADS, total, total * 1000.0 / nanos, compiles,
+            compiles == 0 ? 0 : compileNanos / 1000.0 / compiles, direct, mismatches(model, fib, multipath));
+    }
+
+    // lookups by flags of nodes, M/s
+    private static double directLookups(NetworkModel<?, ?> model, int flag) {
+        List<AbstractNode<?>> nodes = new ArrayList<>(model.getNodes());
+        Random rnd = new Random(RandomNetwork.SEED);
+        long sum = 0;
+        long t0 = System.nanoTime();
+        for (int k = 0; k < DIRECT_LOOKUPS; k++) {
+            AbstractNode<?> node = nodes.get(rnd.nextInt(nodes.size()));
+            for (NID m : node.getOutgoingLinks().keySet())
+                if ((node.getLinkFlags(m) & flag) != 0) {
+                    sum += m.getIndex();
+                    break;
+                }
+        }
+        long nanos = System.nanoTime() - t0;
+        return sum == 0 ? 0 : DIRECT_LOOKUPS * 1000.0 / nanos;
+    }
+
+    // nodes whose next hops in the last table differ from their flags
+    private static int mismatches(NetworkModel<?, ?> model, Fib fib, boolean multipath) {
+        int flag = multipath ? AbstractNode.LINK_BOLD : AbstractNode.LINK_ROUTE;
+        NextHopTable table = fib.getTable();
+        int result = 0;
+        for (AbstractNode<?> node : model.getNodes()) {
+            Set<Integer> expected = new HashSet<>();
+            if (!node.getId().equals(NID.DEST))
+                for (NID m : node.getOutgoingLinks().keySet())
+                    if ((node.getLinkFlags(m) & flag) != 0)
+                        expected.add(m.getIndex());
+            Set<Integer> actual = new HashSet<>();
+            int k = node.getId().getIndex();
+            for (int j = 0; j < table.getHopCount(k); j++)
+                actual.add(table.getHop(k, j));
+            if (!expected.equals(actual))
+                result++;
+        }
+        return result;
+    }
+}
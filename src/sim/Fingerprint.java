@@ -0,0 +1,91 @@
+package sim;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * 64-bit fingerprints of node and message state for deduplication of visited states. All instance fields
+ * are hashed reflectively to any depth (state is acyclic), collections and maps in their iteration order,
+ * so that equal states that were built in a different order may get different fingerprints, but different
+ * states are never merged (up to a hash collision). Library classes other than value types, collections,
+ * maps and primitive arrays are rejected, because they may hash their identity instead of their content.
+ *
+ * @author Roman Elizarov
+ */
+public class Fingerprint {
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass())
+                for (Field f : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers()) || isSkipped(f))
+                        continue;
+                    f.setAccessible(true);
+                    fields.add(f);
+                }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    private Fingerprint() {}
+
+    // fields that are not a part of the state
+    private static boolean isSkipped(Field f) {
+        return f.getDeclaringClass() == AbstractMsg.class && f.getName().equals("firstOverLink");
+    }
+
+    // SplitMix64 finalizer
+    public static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    public static long combine(long h, long v) {
+        return mix(h * 0x9e3779b97f4a7c15L + v);
+    }
+
+    public static long of(Object o) {
+        if (o == null || o instanceof AbstractAlgo)
+            return 0; // algorithm is shared by all nodes and keeps only options and statistics
+        if (o instanceof Integer || o instanceof Long || o instanceof Short || o instanceof Byte ||
+            o instanceof Double || o instanceof Float || o instanceof Boolean || o instanceof Character ||
+            o instanceof String || o instanceof NID || o instanceof BitSet)
+            return mix(o.hashCode());
+        if (o instanceof Enum)
+            return mix(((Enum<?>) o).ordinal() + 1);
+        long h = mix(o.getClass().getName().hashCode());
+        if (o instanceof Collection) {
+            for (Object e : (Collection<?>) o)
+                h = combine(h, of(e));
+            return h;
+        }
+        if (o instanceof Map) {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet())
+                h = combine(combine(h, of(e.getKey())), of(e.getValue()));
+            return h;
+        }
+        if (o instanceof int[])
+            return combine(h, Arrays.hashCode((int[]) o));
+        if (o instanceof long[])
+            return combine(h, Arrays.hashCode((long[]) o));
+        if (o instanceof boolean[])
+            return combine(h, Arrays.hashCode((boolean[]) o));
+        if (o instanceof Object[]) {
+            for (Object e : (Object[]) o)
+                h = combine(h, of(e));
+            return h;
+        }
+        if (o.getClass().isArray() || o.getClass().getName().startsWith("java."))
+            throw new IllegalArgumentException("Cannot fingerprint " + o.getClass().getName());
+        try {
+            for (Field f : FIELDS.get(o.getClass()))
+                h = combine(h, of(f.get(o)));
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+        return h;
+    }
+}
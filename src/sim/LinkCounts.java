@@ -0,0 +1,93 @@
+package sim;
+
+/**
+ * Counts of messages over links by {@link NetworkModel#linkKey} in open addressing hash table with linear probing,
+ * so that counting does not box keys and values. Links with zero count are not kept.
+ *
+ * @author Roman Elizarov
+ */
+class LinkCounts {
+    private long[] keys = new long[16];
+    private int[] counts = new int[16]; // 0 for free slot
+    private int size;
+
+    LinkCounts copy() {
+        LinkCounts c = new LinkCounts();
+        c.keys = keys.clone();
+        c.counts = counts.clone();
+        c.size = size;
+        return c;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & (keys.length - 1);
+    }
+
+    private int find(long key) {
+        int k = slot(key);
+        while (counts[k] != 0 && keys[k] != key)
+            k = (k + 1) & (keys.length - 1);
+        return k;
+    }
+
+    int get(long key) {
+        return counts[find(key)];
+    }
+
+    // returns new count
+    int increment(long key) {
+        int k = find(key);
+        if (counts[k] == 0) {
+            if (2 * (size + 1) > keys.length) {
+                rehash(2 * keys.length);
+                k = find(key);
+            }
+            keys[k] = key;
+            size++;
+        }
+        return ++counts[k];
+    }
+
+    // returns new count, the link is removed when it gets to zero
+    int decrement(long key) {
+        int k = find(key);
+        assert counts[k] > 0 : "No messages over link";
+        int count = --counts[k];
+        if (count == 0)
+            removeAt(k);
+        return count;
+    }
+
+    // backward shift of the following entries, so that there are no deleted markers
+    private void removeAt(int k) {
+        int mask = keys.length - 1;
+        size--;
+        for (int j = (k + 1) & mask; counts[j] != 0; j = (j + 1) & mask) {
+            int h = slot(keys[j]);
+            if (k <= j ? k < h && h <= j : k < h || h <= j)
+                continue; // entry is still reachable from its slot
+            keys[k] = keys[j];
+            counts[k] = counts[j];
+            k = j;
+        }
+        counts[k] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        for (int k = 0; k < oldKeys.length; k++)
+            if (oldCounts[k] != 0) {
+                int j = find(oldKeys[k]);
+                keys[j] = oldKeys[k];
+                counts[j] = oldCounts[k];
+            }
+    }
+}
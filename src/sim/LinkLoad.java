@@ -0,0 +1,125 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Loads of links when traffic toward destination is forwarded over the current routing state as a flow.
+ * Each node splits the flow that it sends and forwards over its next hops:
+ * <ul>
+ * <li>{@link Split#SINGLE} -- all flow goes to one LINK_ROUTE link (the one to the smallest node id);</li>
+ * <li>{@link Split#EQUAL} -- flow is split equally over LINK_BOLD links (successor set);</li>
+ * <li>{@link Split#SLACK} -- flow is split over LINK_BOLD links in proportion to the distance slack of a successor,
+ *   that is how much closer to destination it is than the node itself by true distances.</li>
+ * </ul>
+ * Flow is propagated over the graph of next hops in topological order, so that it takes linear time in the size
+ * of the graph. Flow that reaches a node without next hops or a loop is counted as dropped.
+ *
+ * @author Roman Elizarov
+ */
+public class LinkLoad {
+    public enum Split { SINGLE, EQUAL, SLACK }
+
+    private final Map<NID, Map<NID, Double>> load = new TreeMap<>();
+    private double delivered;
+    private double dropped;
+
+    // demand is the flow that each node sends to destination
+    public LinkLoad(NetworkModel<?, ?> model, Map<NID, Double> demand, Split split) {
+        int flag = split == Split.SINGLE ? AbstractNode.LINK_ROUTE : AbstractNode.LINK_BOLD;
+        // next hops and the number of incoming next hop links of each node
+        Map<NID, List<NID>> hops = new HashMap<>();
+        Map<NID, Integer> indegree = new HashMap<>();
+        for (AbstractNode<?> node : model.getNodes()) {
+            List<NID> h = new ArrayList<>();
+            if (!node.getId().equals(NID.DEST))
+                for (NID m : node.getOutgoingLinks().keySet())
+                    if ((node.getLinkFlags(m) & flag) != 0)
+                        h.add(m);
+            if (split == Split.SINGLE && h.size() > 1)
+                h = Collections.singletonList(Collections.min(h));
+            hops.put(node.getId(), h);
+            for (NID m : h)
+                indegree.merge(m, 1, Integer::sum);
+        }
+        Map<NID, Double> flow = new HashMap<>(demand);
+        Deque<NID> queue = new ArrayDeque<>();
+        for (NID i : hops.keySet())
+            if (!indegree.containsKey(i))
+                queue.add(i);
+        int processed = 0;
+        while (!queue.isEmpty()) {
+            NID i = queue.remove();
+            processed++;
+            double f = flow.getOrDefault(i, 0.0);
+            List<NID> h = hops.get(i);
+            if (i.equals(NID.DEST))
+                delivered += f;
+            else if (h.isEmpty())
+                dropped += f;
+            double[] w = weights(model, i, h, split);
+            for (int k = 0; k < h.size(); k++) {
+                NID m = h.get(k);
+                double share = f * w[k];
+                if (share > 0) {
+                    load.computeIfAbsent(i, $ -> new TreeMap<>()).merge(m, share, Double::sum);
+                    flow.merge(m, share, Double::sum);
+                }
+                if (indegree.merge(m, -1, Integer::sum) == 0)
+                    queue.add(m);
+            }
+        }
+        if (processed < hops.size()) {
+            // nodes on loops and behind them were never ready, all flow they got is lost
+            for (NID i : hops.keySet())
+                if (indegree.getOrDefault(i, 0) > 0)
+                    dropped += flow.getOrDefault(i, 0.0);
+        }
+    }
+
+    private static double[] weights(NetworkModel<?, ?> model, NID i, List<NID> h, Split split) {
+        double[] w = new double[h.size()];
+        if (h.isEmpty())
+            return w;
+        double sum = 0;
+        for (int k = 0; k < h.size(); k++) {
+            if (split == Split.SLACK) {
+                int di = model.getTrueDist(i);
+                int dk = model.getTrueDist(h.get(k));
+                w[k] = di == DistUtil.INF || dk == DistUtil.INF ? 1 : Math.max(di - dk, 1);
+            } else
+                w[k] = 1;
+            sum += w[k];
+        }
+        for (int k = 0; k < w.length; k++)
+            w[k] /= sum;
+        return w;
+    }
+
+    public double getLoad(NID from, NID to) {
+        return load.getOrDefault(from, Collections.emptyMap()).getOrDefault(to, 0.0);
+    }
+
+    public Map<NID, Map<NID, Double>> getLoads() {
+        return load;
+    }
+
+    public double getMaxLoad() {
+        double max = 0;
+        for (Map<NID, Double> map : load.values())
+            for (double f : map.values())
+                max = Math.max(max, f);
+        return max;
+    }
+
+    public int getUsedLinks() {
+        return load.values().stream().mapToInt(Map::size).sum();
+    }
+
+    public double getDelivered() {
+        return delivered;
+    }
+
+    public double getDropped() {
+        return dropped;
+    }
+}
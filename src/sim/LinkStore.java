@@ -0,0 +1,408 @@
+package sim;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Off-heap store of all links of the model. Outgoing links with their distances and incoming links that nodes
+ * know about are kept in two tables of direct buffers in compressed sparse row form by node index plus a log of
+ * changes since the last compaction. Log records of each node are chained from the newest one, so reads of a node
+ * scan only its own changes. The log is merged into a new base when it grows over a quarter of the base.
+ * Nodes use {@link #outgoing} and {@link #incoming} views of their rows as their link maps, so links are not
+ * kept on heap.
+ *
+ * @author Roman Elizarov
+ */
+public class LinkStore {
+    private static final int LOG_MIN = 1024; // min number of log records before compaction
+    private static final int REC = 4; // ints per log record: from, to, value (INF when removed), next of from
+
+    private NID[] ids = new NID[16]; // node ids by index
+    private final Table out = new Table(); // outgoing links, values are distances
+    private final Table in = new Table(); // incoming links, values are 1
+
+    private static ByteBuffer ints(int size) {
+        return ByteBuffer.allocateDirect(size * 4);
+    }
+
+    private static ByteBuffer filled(int size, int v) {
+        ByteBuffer b = ints(size);
+        for (int k = 0; k < size; k++)
+            b.putInt(k * 4, v);
+        return b;
+    }
+
+    private static ByteBuffer grow(ByteBuffer b, int size, int v) {
+        ByteBuffer nb = filled(size, v);
+        for (int k = 0; k < b.capacity() / 4; k++)
+            write(nb, k, read(b, k));
+        return nb;
+    }
+
+    private static int read(ByteBuffer b, int k) {
+        return b.getInt(k * 4);
+    }
+
+    private static void write(ByteBuffer b, int k, int v) {
+        b.putInt(k * 4, v);
+    }
+
+    // number of outgoing links
+    public long size() {
+        return out.links;
+    }
+
+    public long getOffHeapBytes() {
+        return out.bytes() + in.bytes();
+    }
+
+    // number of times the log was merged into a new base in both tables
+    public int getCompactions() {
+        return out.compactions + in.compactions;
+    }
+
+    public void clear() {
+        Arrays.fill(ids, null);
+        out.clear();
+        in.clear();
+    }
+
+    private int index(NID i) {
+        int k = i.getIndex();
+        if (k >= ids.length)
+            ids = Arrays.copyOf(ids, Math.max(k + 1, ids.length * 2));
+        ids[k] = i;
+        return k;
+    }
+
+    private static int indexOf(Object o) {
+        return o instanceof NID ? ((NID) o).getIndex() : -1;
+    }
+
+    // outgoing links of the node with their distances, changes are written to the store
+    public Map<NID, Integer> outgoing(NID i) {
+        return new Outgoing(index(i));
+    }
+
+    // incoming links of the node, changes are written to the store
+    public Set<NID> incoming(NID i) {
+        return new Incoming(index(i));
+    }
+
+    // --- views ---
+
+    private class Outgoing extends AbstractMap<NID, Integer> {
+        private final int row;
+
+        Outgoing(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public int size() {
+            return out.count(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return out.get(row, indexOf(key)) != DistUtil.INF;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            int d = out.get(row, indexOf(key));
+            return d == DistUtil.INF ? null : d;
+        }
+
+        @Override
+        public Integer put(NID key, Integer value) {
+            assert value != DistUtil.INF;
+            int old = out.put(row, index(key), value);
+            return old == DistUtil.INF ? null : old;
+        }
+
+        @Override
+        public Integer remove(Object key) {
+            int k = indexOf(key);
+            int old = k < 0 ? DistUtil.INF : out.put(row, k, DistUtil.INF);
+            return old == DistUtil.INF ? null : old;
+        }
+
+        @Override
+        public Set<Entry<NID, Integer>> entrySet() {
+            return new AbstractSet<Entry<NID, Integer>>() {
+                @Override
+                public int size() {
+                    return out.count(row);
+                }
+
+                @Override
+                public Iterator<Entry<NID, Integer>> iterator() {
+                    return new RowIterator<Entry<NID, Integer>>(out, row) {
+                        @Override
+                        Entry<NID, Integer> element(long e) {
+                            return new SimpleImmutableEntry<>(ids[(int) (e >>> 32)], (int) e);
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private class Incoming extends AbstractSet<NID> {
+        private final int row;
+
+        Incoming(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public int size() {
+            return in.count(row);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return in.get(row, indexOf(o)) != DistUtil.INF;
+        }
+
+        @Override
+        public boolean add(NID m) {
+            return in.put(row, index(m), 1) == DistUtil.INF;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int k = indexOf(o);
+            return k >= 0 && in.put(row, k, DistUtil.INF) != DistUtil.INF;
+        }
+
+        @Override
+        public Iterator<NID> iterator() {
+            return new RowIterator<NID>(in, row) {
+                @Override
+                NID element(long e) {
+                    return ids[(int) (e >>> 32)];
+                }
+            };
+        }
+    }
+
+    // iterates over a snapshot of the row, so the row can be changed while iterating
+    private abstract static class RowIterator<E> implements Iterator<E> {
+        private final Table table;
+        private final int row;
+        private final long[] entries;
+        private int next;
+
+        RowIterator(Table table, int row) {
+            this.table = table;
+            this.row = row;
+            entries = table.row(row);
+        }
+
+        abstract E element(long e);
+
+        @Override
+        public boolean hasNext() {
+            return next < entries.length;
+        }
+
+        @Override
+        public E next() {
+            if (next >= entries.length)
+                throw new NoSuchElementException();
+            return element(entries[next++]);
+        }
+
+        @Override
+        public void remove() {
+            if (next == 0)
+                throw new IllegalStateException();
+            table.put(row, (int) (entries[next - 1] >>> 32), DistUtil.INF);
+        }
+    }
+
+    // --- table ---
+
+    // rows of (column, value) pairs by node index
+    private static class Table {
+        private int n; // number of row indices that are used
+        private long links; // total number of entries
+        private int compactions;
+
+        // --- base ---
+
+        private int baseRows; // number of rows in base
+        private int baseLinks;
+        private ByteBuffer start = ints(1); // entries of row k are at start[k] until start[k + 1]
+        private ByteBuffer col = ints(0); // sorted in each row
+        private ByteBuffer val = ints(0);
+
+        // --- log ---
+
+        private int logSize; // number of records
+        private ByteBuffer log = ints(LOG_MIN * REC);
+        private ByteBuffer head = filled(16, -1); // newest log record for each row, -1 if none
+        private ByteBuffer count = filled(16, 0); // number of entries in each row
+
+        void clear() {
+            n = 0;
+            links = 0;
+            baseRows = 0;
+            baseLinks = 0;
+            start = ints(1);
+            col = ints(0);
+            val = ints(0);
+            logSize = 0;
+            log = ints(LOG_MIN * REC);
+            head = filled(16, -1);
+            count = filled(16, 0);
+        }
+
+        long bytes() {
+            return (long) start.capacity() + col.capacity() + val.capacity() + log.capacity() + head.capacity() +
+                count.capacity();
+        }
+
+        int count(int r) {
+            return r < n ? read(count, r) : 0;
+        }
+
+        int get(int r, int c) {
+            if (r >= n || c < 0)
+                return DistUtil.INF;
+            for (int e = read(head, r); e >= 0; e = read(log, e * REC + 3))
+                if (read(log, e * REC + 1) == c)
+                    return read(log, e * REC + 2);
+            if (r >= baseRows)
+                return DistUtil.INF;
+            // binary search in base row
+            int lo = read(start, r);
+            int hi = read(start, r + 1) - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int v = read(col, mid);
+                if (v < c)
+                    lo = mid + 1;
+                else if (v > c)
+                    hi = mid - 1;
+                else
+                    return read(val, mid);
+            }
+            return DistUtil.INF;
+        }
+
+        // updates or removes (when v is INF) an entry, returns old value
+        int put(int r, int c, int v) {
+            int old = get(r, c);
+            if (old == v)
+                return old;
+            if (r >= head.capacity() / 4) {
+                int size = Math.max(r + 1, head.capacity() / 2);
+                head = grow(head, size, -1);
+                count = grow(count, size, 0);
+            }
+            n = Math.max(n, r + 1);
+            if (old == DistUtil.INF) {
+                links++;
+                write(count, r, read(count, r) + 1);
+            } else if (v == DistUtil.INF) {
+                links--;
+                write(count, r, read(count, r) - 1);
+            }
+            int e = logSize++;
+            if (logSize * REC * 4 > log.capacity()) {
+                ByteBuffer nl = ints(log.capacity() / 2);
+                log.clear();
+                nl.put(log);
+                log = nl;
+            }
+            write(log, e * REC, r);
+            write(log, e * REC + 1, c);
+            write(log, e * REC + 2, v);
+            write(log, e * REC + 3, read(head, r));
+            write(head, r, e);
+            if (logSize > Math.max(LOG_MIN, baseLinks / 4))
+                compact();
+            return old;
+        }
+
+        // current entries of row r as (column << 32 | value) sorted by column
+        long[] row(int r) {
+            long[] result = new long[count(r)];
+            if (result.length == 0)
+                return result;
+            int b0 = r < baseRows ? read(start, r) : 0;
+            int b1 = r < baseRows ? read(start, r + 1) : 0;
+            if (r >= n || read(head, r) < 0) {
+                for (int e = b0; e < b1; e++)
+                    result[e - b0] = entry(read(col, e), read(val, e));
+                return result;
+            }
+            // the newest log record of each column, rows have few changes between compactions
+            long[] changes = new long[4];
+            int size = 0;
+            for (int e = read(head, r); e >= 0; e = read(log, e * REC + 3)) {
+                long x = entry(read(log, e * REC + 1), read(log, e * REC + 2));
+                boolean seen = false;
+                for (int j = 0; j < size && !seen; j++)
+                    seen = changes[j] >>> 32 == x >>> 32;
+                if (seen)
+                    continue;
+                if (size == changes.length)
+                    changes = Arrays.copyOf(changes, 2 * size);
+                changes[size++] = x;
+            }
+            Arrays.sort(changes, 0, size);
+            // merge with base row
+            int k = 0;
+            int j = 0;
+            int e = b0;
+            while (e < b1 || j < size) {
+                int c = e < b1 ? read(col, e) : Integer.MAX_VALUE;
+                int cj = j < size ? (int) (changes[j] >>> 32) : Integer.MAX_VALUE;
+                if (c < cj)
+                    result[k++] = entry(c, read(val, e++));
+                else {
+                    if ((int) changes[j] != DistUtil.INF)
+                        result[k++] = changes[j];
+                    j++;
+                    if (c == cj)
+                        e++;
+                }
+            }
+            assert k == result.length : "Row size mismatch";
+            return result;
+        }
+
+        private static long entry(int c, int v) {
+            return (long) c << 32 | v & 0xffffffffL;
+        }
+
+        // merges log into a new base
+        private void compact() {
+            int m = (int) links;
+            ByteBuffer nStart = ints(n + 1);
+            ByteBuffer nCol = ints(m);
+            ByteBuffer nVal = ints(m);
+            int e = 0;
+            for (int r = 0; r < n; r++) {
+                write(nStart, r, e);
+                for (long x : row(r)) {
+                    write(nCol, e, (int) (x >>> 32));
+                    write(nVal, e++, (int) x);
+                }
+            }
+            write(nStart, n, e);
+            start = nStart;
+            col = nCol;
+            val = nVal;
+            baseRows = n;
+            baseLinks = m;
+            logSize = 0;
+            head = filled(head.capacity() / 4, -1);
+            compactions++;
+        }
+    }
+}
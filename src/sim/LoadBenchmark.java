@@ -0,0 +1,66 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Compares max link load when traffic toward destination is forwarded over a single path and when it is split
+ * over successor sets with {@link LinkLoad}. Every node of a random converged network sends random demand to
+ * destination. Single path is reported for every algorithm, equal and slack splits for loop-free algorithms.
+ * Max load is also shown relative to the single path of the first algorithm on the same topology.
+ * Takes a list of algorithm names (with options like "DFB:SH") as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class LoadBenchmark<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int[] TOPOLOGY_SIZES = { 20, 50, 100 };
+    private static final int EXTRA_LINKS = 2; // random links of each node in addition to the one that keeps it connected
+    private static final int MAX_D = 10;
+    private static final int MAX_DEMAND = 10;
+
+    public static void main(String[] args) {
+        System.out.printf("%-16s %-10s %-8s %12s %12s %12s %12s%n", "Algo", "Topology", "Split", "Max load",
+            "vs first", "Used links", "Dropped");
+        for (int n : TOPOLOGY_SIZES) {
+            Random rnd = new Random(RandomNetwork.SEED + n);
+            RandomNetwork network = new RandomNetwork(n, EXTRA_LINKS, RandomNetwork.MIN_D, MAX_D, rnd);
+            Map<NID, Double> demand = new HashMap<>();
+            for (int i = 1; i < n; i++)
+                demand.put(NID.getNID(i), (double) (1 + rnd.nextInt(MAX_DEMAND)));
+            double[] first = new double[1];
+            for (String name : args)
+                new LoadBenchmark<>(name, "random-" + n, network, demand, first).go();
+        }
+    }
+
+    private final String name;
+    private final String topology;
+    private final RandomNetwork network;
+    private final Map<NID, Double> demand;
+    private final double[] first; // max load of single path of the first algorithm, 0 before it is known
+
+    public LoadBenchmark(String name, String topology, RandomNetwork network, Map<NID, Double> demand, double[] first) {
+        this.name = name;
+        this.topology = topology;
+        this.network = network;
+        this.demand = demand;
+        this.first = first;
+    }
+
+    private void go() {
+        NetworkModel<M, N> model = AlgoFactory.createModel(name);
+        network.converge(model);
+        report(model, LinkLoad.Split.SINGLE);
+        if (model.getAlgo().isLoopFree()) {
+            report(model, LinkLoad.Split.EQUAL);
+            report(model, LinkLoad.Split.SLACK);
+        }
+    }
+
+    private void report(NetworkModel<M, N> model, LinkLoad.Split split) {
+        LinkLoad load = new LinkLoad(model, demand, split);
+        if (first[0] == 0)
+            first[0] = load.getMaxLoad();
+        System.out.printf("%-16s %-10s %-8s %12.1f %12.3f %12d %12.1f%n", name, topology, split, load.getMaxLoad(),
+            load.getMaxLoad() / first[0], load.getUsedLinks(), load.getDropped());
+    }
+}
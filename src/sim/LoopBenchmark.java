@@ -0,0 +1,64 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Measures transient loops in the successor graph (LINK_BOLD links) and in the routing graph (LINK_ROUTE links)
+ * with {@link LoopMonitor} after every processed message. A random network starts cold, then random links fail
+ * and recover one by one while messages are processed in random order. The sequence of link changes is the same
+ * for every algorithm. Reports the number of loops, total and the longest loop duration in virtual time,
+ * and CPU time per monitor update. Takes a list of algorithm names (with options like "DFB:SH") as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class LoopBenchmark<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int NODES = 50;
+    private static final int CHANGES = 200;
+
+    public static void main(String[] args) {
+        System.out.printf("%-16s %-10s %12s %12s %12s %12s %12s%n", "Algo", "Graph", "Loops", "Loop time", "Max loop", "Time", "ns/update");
+        for (String name : args) {
+            new LoopBenchmark<>(name).go();
+        }
+    }
+
+    private final String name;
+    private final NetworkModel<M, N> model;
+    private final LoopMonitor bold;
+    private final LoopMonitor route;
+    private long nanos;
+    private long updates;
+
+    public LoopBenchmark(String name) {
+        this.name = name;
+        model = AlgoFactory.createModel(name);
+        bold = new LoopMonitor(model, AbstractNode.LINK_BOLD);
+        route = new LoopMonitor(model, AbstractNode.LINK_ROUTE);
+    }
+
+    private void go() {
+        RandomNetwork network = new RandomNetwork(NODES, new Random(RandomNetwork.SEED));
+        Random order = new Random(RandomNetwork.SEED);
+        network.updateBatch(model);
+        RandomNetwork.processAll(model, order, this::update);
+        network.churn(model, CHANGES, order, this::update);
+        report("successor", bold);
+        report("route", route);
+        if (model.getAlgo().isLoopFree() && bold.getLoops() > 0)
+            System.out.println("=== FAIL: Loop in successor graph ===");
+        RandomNetwork.verify(model);
+    }
+
+    private void update() {
+        long t0 = System.nanoTime();
+        bold.update();
+        route.update();
+        nanos += System.nanoTime() - t0;
+        updates++;
+    }
+
+    private void report(String graph, LoopMonitor monitor) {
+        System.out.printf("%-16s %-10s %12d %12d %12d %12d %12d%n", name, graph,
+            monitor.getLoops(), monitor.getLoopTime(), monitor.getMaxLoopTime(), model.getTime(), nanos / updates);
+    }
+}
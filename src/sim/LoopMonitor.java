@@ -0,0 +1,213 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Watches for loops in the graph of links with a given flag (like LINK_BOLD successor graph or LINK_ROUTE routing
+ * graph) while the model runs. The graph is kept incrementally: only links of nodes that changed since the last
+ * {@link #update} are recomputed. Links are kept in a topological order with the online algorithm by Pearce and
+ * Kelly, so that a new link that agrees with the order is added in constant time, and only the affected part of
+ * the order is searched and reordered otherwise. Links that would close a loop are kept aside and are retried when
+ * other links are removed, so there is a loop in the graph as long as any link is put aside.
+ * Loop duration is measured in virtual time of the model.
+ *
+ * @author Roman Elizarov
+ */
+public class LoopMonitor {
+    private final NetworkModel<?, ?> model;
+    private final int flag;
+
+    private final Set<NID> changed = new HashSet<>(); // nodes to recompute links of on update
+    private final Map<NID, Set<NID>> links = new HashMap<>(); // links of each node with flag
+
+    // --- ordered graph by NID index ---
+
+    private int[] ord = new int[0]; // position in topological order, -1 for unknown nodes
+    private int nextOrd;
+    private final Map<Integer, NID> nids = new HashMap<>(); // by index
+    private final Map<Integer, Set<Integer>> out = new HashMap<>();
+    private final Map<Integer, Set<Integer>> in = new HashMap<>();
+    private final Set<Long> blocked = new LinkedHashSet<>(); // links that close a loop, by key from << 32 | to
+
+    // --- statistics ---
+
+    private long loopSince = -1; // virtual time when the loop had appeared, -1 if none
+    private long loops; // number of times a loop had appeared
+    private long loopTime; // total virtual time with a loop
+    private long maxLoopTime; // the longest loop
+    private long reorders; // links that were added against topological order
+
+    public LoopMonitor(NetworkModel<?, ?> model, int flag) {
+        this.model = model;
+        this.flag = flag;
+        for (AbstractNode<?> node : model.getNodes())
+            changed.add(node.getId());
+        update();
+        model.addChangeListener(changed::add);
+    }
+
+    // recomputes links of changed nodes, must be called after each change of the model to measure loops precisely
+    public void update() {
+        if (changed.isEmpty())
+            return;
+        List<NID[]> added = new ArrayList<>();
+        for (NID i : changed) {
+            AbstractNode<?> node = model.getNIDs().contains(i) ? model.getNode(i) : null;
+            Set<NID> s = new HashSet<>();
+            if (node != null)
+                for (NID m : node.getOutgoingLinks().keySet())
+                    if ((node.getLinkFlags(m) & flag) != 0)
+                        s.add(m);
+            Set<NID> old = links.getOrDefault(i, Collections.emptySet());
+            // links are removed first, so that they do not block added ones
+            for (NID m : old)
+                if (!s.contains(m))
+                    remove(i.getIndex(), m.getIndex());
+            for (NID m : s)
+                if (!old.contains(m))
+                    added.add(new NID[] { i, m });
+            if (s.isEmpty())
+                links.remove(i);
+            else
+                links.put(i, s);
+        }
+        changed.clear();
+        for (NID[] link : added) {
+            nids.put(link[0].getIndex(), link[0]);
+            nids.put(link[1].getIndex(), link[1]);
+            add(link[0].getIndex(), link[1].getIndex());
+        }
+        boolean loop = hasLoop();
+        if (loop && loopSince < 0) {
+            loopSince = model.getTime();
+            loops++;
+        } else if (!loop && loopSince >= 0)
+            endLoop();
+    }
+
+    private void endLoop() {
+        long t = model.getTime() - loopSince;
+        loopTime += t;
+        maxLoopTime = Math.max(maxLoopTime, t);
+        loopSince = -1;
+    }
+
+    public boolean hasLoop() {
+        return !blocked.isEmpty();
+    }
+
+    // links that close loops at the moment
+    public List<String> getLoopLinks() {
+        List<String> result = new ArrayList<>();
+        for (long key : blocked)
+            result.add(nids.get((int) (key >>> 32)) + "->" + nids.get((int) key));
+        return result;
+    }
+
+    public long getLoops() {
+        return loops;
+    }
+
+    // includes the loop that is still present
+    public long getLoopTime() {
+        return loopTime + (loopSince >= 0 ? model.getTime() - loopSince : 0);
+    }
+
+    public long getMaxLoopTime() {
+        return Math.max(maxLoopTime, loopSince >= 0 ? model.getTime() - loopSince : 0);
+    }
+
+    public long getReorders() {
+        return reorders;
+    }
+
+    // --- online topological order ---
+
+    private void add(int x, int y) {
+        ensure(x);
+        ensure(y);
+        if (!insert(x, y))
+            blocked.add((long) x << 32 | y);
+    }
+
+    private void remove(int x, int y) {
+        if (blocked.remove((long) x << 32 | y))
+            return;
+        out.get(x).remove(y);
+        in.get(y).remove(x);
+        // put aside links may no longer close a loop
+        for (Iterator<Long> it = blocked.iterator(); it.hasNext();) {
+            long key = it.next();
+            if (insert((int) (key >>> 32), (int) key))
+                it.remove();
+        }
+    }
+
+    private void ensure(int v) {
+        if (v >= ord.length) {
+            int n = ord.length;
+            ord = Arrays.copyOf(ord, Math.max(v + 1, 2 * n));
+            Arrays.fill(ord, n, ord.length, -1);
+        }
+        if (ord[v] < 0)
+            ord[v] = nextOrd++;
+    }
+
+    // adds link x->y to ordered graph, returns false when it would close a loop
+    private boolean insert(int x, int y) {
+        int lb = ord[y];
+        int ub = ord[x];
+        if (lb < ub) {
+            // nodes reachable from y that must be after x
+            List<Integer> f = new ArrayList<>();
+            if (!search(y, x, ub, out, true, f))
+                return false;
+            // nodes that reach x and must be before y
+            List<Integer> b = new ArrayList<>();
+            search(x, -1, lb, in, false, b);
+            reorder(b, f);
+            reorders++;
+        }
+        out.computeIfAbsent(x, $ -> new HashSet<>()).add(y);
+        in.computeIfAbsent(y, $ -> new HashSet<>()).add(x);
+        return true;
+    }
+
+    // collects nodes from v within the bound of order, returns false when target is reached
+    private boolean search(int v, int target, int bound, Map<Integer, Set<Integer>> adj, boolean forward, List<Integer> result) {
+        Set<Integer> seen = new HashSet<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(v);
+        seen.add(v);
+        while (!stack.isEmpty()) {
+            int u = stack.pop();
+            result.add(u);
+            for (int w : adj.getOrDefault(u, Collections.emptySet())) {
+                if (w == target)
+                    return false;
+                if ((forward ? ord[w] < bound : ord[w] > bound) && seen.add(w))
+                    stack.push(w);
+            }
+        }
+        return true;
+    }
+
+    // nodes of b go before nodes of f in the positions that they occupied
+    private void reorder(List<Integer> b, List<Integer> f) {
+        Comparator<Integer> byOrd = Comparator.comparingInt(v -> ord[v]);
+        b.sort(byOrd);
+        f.sort(byOrd);
+        int[] pos = new int[b.size() + f.size()];
+        int k = 0;
+        for (int v : b)
+            pos[k++] = ord[v];
+        for (int v : f)
+            pos[k++] = ord[v];
+        Arrays.sort(pos);
+        k = 0;
+        for (int v : b)
+            ord[v] = pos[k++];
+        for (int v : f)
+            ord[v] = pos[k++];
+    }
+}
@@ -0,0 +1,82 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Compares heap used by a large random converged network when nodes keep their links in heap maps and when
+ * they are views over off-heap {@link LinkStore}. Reports heap and off-heap megabytes, heap bytes per link,
+ * time to load converged state and time of a random link change after it.
+ * Takes a list of algorithm names (with options like "DFB:SH") as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class MemoryBenchmark<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int SEED = 1;
+
+    private static final int NODES = 50_000;
+    private static final int EXTRA_LINKS = 2; // random links of each node in addition to the one that keeps it connected
+    private static final int CHANGES = 100;
+    private static final int MIN_D = 1;
+    private static final int MAX_D = 10;
+
+    public static void main(String[] args) {
+        Map<NID, Map<NID, Integer>> links = new RandomNetwork(NODES, EXTRA_LINKS, MIN_D, MAX_D, new Random(SEED)).getLinks();
+        long n = links.values().stream().mapToLong(Map::size).sum();
+        System.out.printf("%-16s %-8s %12s %12s %12s %12s %12s%n", "Algo", "Links", "Heap MB", "Off-heap MB",
+            "Heap B/link", "Load ms", "us/change");
+        for (String name : args) {
+            new MemoryBenchmark<>(name, links, n).go(false);
+            new MemoryBenchmark<>(name, links, n).go(true);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int k = 0; k < 3; k++)
+            System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private final String name;
+    private final Map<NID, Map<NID, Integer>> links;
+    private final long n; // number of links
+
+    public MemoryBenchmark(String name, Map<NID, Map<NID, Integer>> links, long n) {
+        this.name = name;
+        this.links = links;
+        this.n = n;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void go(boolean offHeap) {
+        long heap0 = usedHeap();
+        NetworkModel<M, N> model = NetworkModel.createNetworkModel(false, AlgoFactory.createAlgo(name));
+        if (offHeap)
+            model.useOffHeapLinks();
+        long t0 = System.nanoTime();
+        model.loadConverged(links);
+        while (!model.getMsgs().isEmpty())
+            model.processMessage(0); // when the algorithm does not support converged state
+        long loadNanos = System.nanoTime() - t0;
+        long heap = usedHeap() - heap0;
+        // fail and recover random links
+        Random rnd = new Random(SEED);
+        t0 = System.nanoTime();
+        for (int k = 0; k < CHANGES; k++) {
+            NID a = NID.getNID(1 + rnd.nextInt(NODES - 1));
+            NID b = model.getNode(a).getOutgoingLinks().keySet().iterator().next();
+            int d = model.getLink(a, b);
+            model.removeLink(a, b);
+            RandomNetwork.processAll(model, rnd);
+            model.updateLink(a, b, d);
+            RandomNetwork.processAll(model, rnd);
+        }
+        long changeNanos = System.nanoTime() - t0;
+        long offHeapBytes = offHeap ? model.getLinkStore().getOffHeapBytes() : 0;
+        System.out.printf("%-16s %-8s %12.1f %12.1f %12.1f %12d %12d%n", name, offHeap ? "off-heap" : "heap",
+            heap / 1e6, offHeapBytes / 1e6, (double) heap / n, loadNanos / 1_000_000, changeNanos / 1000 / (2 * CHANGES));
+        String text = model.verifyInQuiescentState();
+        if (text != null)
+            System.out.println("=== FAIL: " + text + " ===");
+    }
+}
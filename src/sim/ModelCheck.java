@@ -0,0 +1,374 @@
+package sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exhaustive exploration of all delivery orders of messages on a small random topology: on cold start, and after
+ * failure of each link in converged state. Every state is checked for a loop among LINK_BOLD links when the
+ * algorithm is loop-free, and every terminal (quiescent) state is verified and checked for a routing loop.
+ *
+ * <p>Visited states are deduplicated by fingerprints of node states and of per-link message queues that are updated
+ * incrementally, since forked models copy only nodes that change. Deliveries to different nodes commute, so only
+ * one of their orders is explored with sleep sets. States with pending timers are not deduplicated, and when
+ * the algorithm uses timers the scenario is explored again without reduction, since deliveries no longer commute.
+ * Exploration runs in parallel on all available processors in a work-stealing pool.
+ * The first failure is saved as a {@link Trace} file "check-algo-scenario.trace".
+ * Takes algorithm name (with options like "DFB:SH"), optional number of nodes and random seed as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class ModelCheck<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int NODES = 4;
+    private static final int SEED = 1;
+    private static final int MIN_D = 1;
+    private static final int MAX_D = 10;
+    private static final int MAX_STATES = 1_000_000; // exploration of a scenario is cut after this many states
+    private static final int MAX_DEPTH = 400; // paths are cut after this many deliveries, exploration recurses on them
+
+    public static void main(String[] args) throws IOException {
+        int nn = args.length > 1 ? Integer.parseInt(args[1]) : NODES;
+        int seed = args.length > 2 ? Integer.parseInt(args[2]) : SEED;
+        new ModelCheck<>(args[0], nn, seed).go();
+    }
+
+    private final String name;
+    private final int nn;
+    private final int seed;
+    private final ForkJoinPool pool = new ForkJoinPool();
+
+    public ModelCheck(String name, int nn, int seed) {
+        this.name = name;
+        this.nn = nn;
+        this.seed = seed;
+    }
+
+    private void go() throws IOException {
+        System.out.println("Checking " + name + " on " + nn + " nodes");
+        Random rnd = new Random(seed);
+        Trace setup = new Trace();
+        setup.add(Trace.Type.BATCH);
+        RandomNetwork network = new RandomNetwork(nn, 1, MIN_D, MAX_D, rnd);
+        for (NID[] link : network.getPairs()) {
+            int d = network.getLinks().get(link[0]).get(link[1]);
+            setup.add(Trace.Type.LINK, link[0], link[1], d);
+            setup.add(Trace.Type.LINK, link[1], link[0], d);
+        }
+        setup.add(Trace.Type.COMMIT);
+        System.out.printf("%-12s %12s %12s %12s %12s %8s%n", "Scenario", "States", "Distinct", "Terminals",
+            "Outcomes", "Depth");
+        NetworkModel<M, N> cold = newModel();
+        cold.beginBatch();
+        for (Trace.Event e : setup.getEvents())
+            if (e.type == Trace.Type.LINK)
+                cold.updateLink(e.a, e.b, e.d);
+        cold.commitBatch();
+        if (!check("cold", setup, cold))
+            return;
+        // converged state is forked for each link failure
+        NetworkModel<M, N> model = newModel();
+        setup.add(Trace.Type.VERIFY);
+        String text = setup.replay(model, null).failure;
+        if (text != null) {
+            System.out.println("=== FAIL: " + text + " ===");
+            return;
+        }
+        for (NID[] link : network.getPairs()) {
+            Trace trace = new Trace(setup.getEvents());
+            trace.add(Trace.Type.REMOVE, link[0], link[1], 0);
+            NetworkModel<M, N> fork = model.fork();
+            fork.removeLink(link[0], link[1]);
+            if (!check(link[0] + "<->" + link[1], trace, fork))
+                return;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private NetworkModel<M, N> newModel() {
+        NetworkModel<M, N> model = NetworkModel.createNetworkModel(false, AlgoFactory.createAlgo(name));
+        model.getNode(NID.DEST);
+        for (int i = 1; i < nn; i++)
+            model.getNode(NID.getNID(i));
+        return model;
+    }
+
+    // explores all delivery orders from the state of the model after the setup trace, returns false on failure
+    private boolean check(String scenario, Trace setup, NetworkModel<M, N> model) throws IOException {
+        Search search = new Search(true);
+        search.run(model.fork());
+        boolean timed = search.timed;
+        if (timed) {
+            search = new Search(false);
+            search.run(model);
+        }
+        System.out.printf("%-12s %12d %12d %12d %12d %8d%s%n", scenario, search.states.get(), search.visited.size(),
+            search.terminals.sum(), search.outcomes.size(), search.depth.get(),
+            (timed ? " no reduction" : "") + (search.cut ? " INCOMPLETE" : ""));
+        Failure failure = search.failure.get();
+        if (failure == null)
+            return true;
+        System.out.println("=== FAIL: " + failure.text + " ===");
+        Trace trace = new Trace(setup.getEvents());
+        List<Path> path = new ArrayList<>();
+        for (Path p = failure.path; p != null; p = p.parent)
+            path.add(p);
+        Collections.reverse(path);
+        for (Path p : path)
+            trace.add(Trace.Type.DELIVER, p.from, p.to, 0);
+        if (failure.terminal)
+            trace.add(Trace.Type.VERIFY);
+        trace.addComment(name + " " + scenario + ": " + failure.text);
+        File file = new File("check-" + name.replaceAll("[^A-Za-z0-9=]", "_") + "-" +
+            scenario.replaceAll("[^A-Za-z0-9]", "_") + ".trace");
+        trace.write(file);
+        System.out.println("Saved " + file);
+        return false;
+    }
+
+    // --- search ---
+
+    private static class Path {
+        final Path parent;
+        final NID from;
+        final NID to;
+
+        Path(Path parent, NID from, NID to) {
+            this.parent = parent;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static class Failure {
+        final Path path;
+        final String text;
+        final boolean terminal;
+
+        Failure(Path path, String text, boolean terminal) {
+            this.path = path;
+            this.text = text;
+            this.terminal = terminal;
+        }
+    }
+
+    private class Search {
+        final boolean reduce; // deliveries to different nodes commute
+        final Map<Long, Set<Long>> visited = new ConcurrentHashMap<>(); // fingerprint -> sleep set it was explored with
+        final AtomicLong states = new AtomicLong(); // explored states, including revisits
+        final LongAdder terminals = new LongAdder();
+        final Set<Long> outcomes = ConcurrentHashMap.newKeySet(); // distinct terminal states
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicReference<Failure> failure = new AtomicReference<>();
+        volatile boolean timed; // timers were found with reduction on, search must be repeated without it
+        volatile boolean cut; // limits were reached
+        volatile boolean stopped;
+
+        Search(boolean reduce) {
+            this.reduce = reduce;
+        }
+
+        void run(NetworkModel<M, N> model) {
+            pool.invoke(new Explore(new State(model), Collections.emptySet()));
+        }
+
+        void fail(State s, String text, boolean terminal) {
+            if (failure.compareAndSet(null, new Failure(s.path, text, terminal)))
+                stopped = true;
+        }
+
+        class Explore extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            final State s;
+            final Set<Long> sleep; // links whose deliveries are already explored from an equivalent order
+
+            Explore(State s, Set<Long> sleep) {
+                this.s = s;
+                this.sleep = sleep;
+            }
+
+            @Override
+            protected void compute() {
+                if (stopped)
+                    return;
+                s.deliver();
+                if (s.failure != null) {
+                    fail(s, s.failure, false);
+                    return;
+                }
+                if (states.incrementAndGet() > MAX_STATES) {
+                    cut = true;
+                    stopped = true;
+                    return;
+                }
+                NetworkModel<M, N> model = s.model;
+                depth.accumulateAndGet(s.depth, Math::max);
+                if (reduce && model.hasTimers()) {
+                    timed = true;
+                    stopped = true;
+                    return;
+                }
+                if (model.getAlgo().isLoopFree() && WhatIf.hasLoop(WhatIf.linksWithFlag(model, AbstractNode.LINK_BOLD))) {
+                    fail(s, "Loop in " + WhatIf.linksWithFlag(model, AbstractNode.LINK_BOLD), false);
+                    return;
+                }
+                // first message over each link in queue order
+                Map<Long, Integer> enabled = new LinkedHashMap<>();
+                List<M> msgs = model.getMsgs();
+                for (int i = 0; i < msgs.size(); i++)
+                    if (msgs.get(i).firstOverLink)
+                        enabled.put(NetworkModel.linkKey(msgs.get(i).from, msgs.get(i).to), i);
+                Set<Long> todo = new LinkedHashSet<>(enabled.keySet());
+                if (!model.hasTimers()) {
+                    // explore transitions that were asleep when the state was visited before
+                    AtomicReference<Set<Long>> prev = new AtomicReference<>();
+                    visited.compute(s.fp, (fp, set) -> {
+                        prev.set(set);
+                        if (set == null)
+                            return sleep;
+                        Set<Long> both = new HashSet<>(set);
+                        both.retainAll(sleep);
+                        return both;
+                    });
+                    if (prev.get() != null)
+                        todo.retainAll(prev.get());
+                }
+                todo.removeAll(sleep);
+                if (enabled.isEmpty()) {
+                    terminal();
+                    return;
+                }
+                if (s.depth >= MAX_DEPTH) {
+                    cut = true;
+                    return;
+                }
+                List<Explore> children = new ArrayList<>();
+                Set<Long> done = new HashSet<>(sleep);
+                for (long link : todo) {
+                    M msg = msgs.get(enabled.get(link));
+                    Set<Long> childSleep = new HashSet<>();
+                    if (reduce)
+                        for (long o : done)
+                            if ((int) o != msg.to.getIndex()) // receiver index is in the low half of the key
+                                childSleep.add(o);
+                    done.add(link);
+                    children.add(new Explore(new State(s, enabled.get(link)), childSleep));
+                }
+                invokeAll(children);
+            }
+
+            private void terminal() {
+                terminals.increment();
+                if (!outcomes.add(s.fp))
+                    return;
+                String text = s.model.verifyAllInQuiescentState();
+                if (text == null && WhatIf.hasLoop(WhatIf.routes(s.model)))
+                    text = "Routing loop in " + WhatIf.routes(s.model);
+                if (text != null)
+                    fail(s, text, true);
+            }
+        }
+    }
+
+    // model state with incrementally maintained fingerprints of nodes and link queues
+    private class State {
+        final NetworkModel<M, N> model;
+        final Path path;
+        final int depth;
+        final AbstractNode<?>[] nodes; // by NID index, forks copy nodes that change
+        final long[] nodeHash;
+        final Map<Long, Long> linkHash = new HashMap<>(); // by linkKey
+        long fp;
+        String failure; // failure of the transition to this state, null if none
+
+        State(NetworkModel<M, N> model) {
+            this.model = model;
+            path = null;
+            depth = 0;
+            int size = 0;
+            for (NID i : model.getNIDs())
+                size = Math.max(size, i.getIndex() + 1);
+            nodes = new AbstractNode<?>[size];
+            nodeHash = new long[size];
+            for (N node : model.getNodes())
+                updateNode(node);
+            Set<Long> links = new HashSet<>();
+            for (M msg : model.getMsgs())
+                links.add(NetworkModel.linkKey(msg.from, msg.to));
+            links.forEach(this::updateLink);
+        }
+
+        // state after delivery of i-th message, model is forked in the thread of the parent,
+        // the message is delivered by deliver in the thread that explores the state
+        State(State parent, int i) {
+            model = parent.model.fork();
+            M msg = model.getMsgs().get(i);
+            path = new Path(parent.path, msg.from, msg.to);
+            depth = parent.depth + 1;
+            nodes = parent.nodes.clone();
+            nodeHash = parent.nodeHash.clone();
+            linkHash.putAll(parent.linkHash);
+            fp = parent.fp;
+            this.i = i;
+        }
+
+        private int i = -1; // message to deliver, -1 when delivered
+
+        void deliver() {
+            if (i < 0)
+                return;
+            List<M> msgs = model.getMsgs();
+            M msg = msgs.get(i);
+            int size = msgs.size();
+            try {
+                model.processMessage(i);
+            } catch (Throwable t) {
+                failure = t.toString();
+                return;
+            }
+            i = -1;
+            for (N node : model.getNodes())
+                if (node != nodes[node.getId().getIndex()])
+                    updateNode(node);
+            // messages that were sent are appended at the end
+            Set<Long> links = new HashSet<>();
+            links.add(NetworkModel.linkKey(msg.from, msg.to));
+            for (int k = size - 1; k < msgs.size(); k++)
+                links.add(NetworkModel.linkKey(msgs.get(k).from, msgs.get(k).to));
+            links.forEach(this::updateLink);
+        }
+
+        private void updateNode(N node) {
+            int k = node.getId().getIndex();
+            fp -= Fingerprint.combine(k, nodeHash[k]);
+            nodes[k] = node;
+            nodeHash[k] = Fingerprint.of(node);
+            fp += Fingerprint.combine(k, nodeHash[k]);
+        }
+
+        private void updateLink(long link) {
+            Long old = linkHash.remove(link);
+            if (old != null)
+                fp -= Fingerprint.combine(link, old);
+            long h = 0;
+            boolean empty = true;
+            for (M msg : model.getMsgs())
+                if (NetworkModel.linkKey(msg.from, msg.to) == link) {
+                    h = Fingerprint.combine(h, Fingerprint.of(msg));
+                    empty = false;
+                }
+            if (!empty) {
+                linkHash.put(link, h);
+                fp += Fingerprint.combine(link, h);
+            }
+        }
+    }
+}
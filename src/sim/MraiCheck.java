@@ -0,0 +1,43 @@
+package sim;
+
+import sim.dfb.DFBAlgo;
+
+import java.util.*;
+
+/**
+ * Checks that DFB with MRAI never sends more messages than DFB without it on {@link Benchmark} scenarios.
+ * Takes DFB algorithm name (with options like "DFB:SH") and MRAI values as arguments, by default
+ * checks plain DFB with MRAI of {@value #DEFAULT_MRAI}.
+ *
+ * @author Roman Elizarov
+ */
+public class MraiCheck {
+    private static final String DEFAULT_NAME = "DFB";
+    private static final int DEFAULT_MRAI = 50;
+
+    public static void main(String[] args) {
+        String name = args.length > 0 ? args[0] : DEFAULT_NAME;
+        List<Integer> mrais = new ArrayList<>();
+        for (int k = 1; k < args.length; k++)
+            mrais.add(Integer.parseInt(args[k]));
+        if (mrais.isEmpty())
+            mrais.add(DEFAULT_MRAI);
+        Benchmark.printHeader();
+        Map<String, Long> base = new Benchmark<>(name).go();
+        boolean ok = true;
+        for (int mrai : mrais) {
+            String with = name + (name.contains(":") ? "," : ":") + DFBAlgo.MRAI_OPTION + mrai;
+            Map<String, Long> messages = new Benchmark<>(with).go();
+            for (Map.Entry<String, Long> e : messages.entrySet()) {
+                long b = base.get(e.getKey());
+                if (e.getValue() > b) {
+                    System.out.println("=== FAIL: " + with + " sends " + e.getValue() + " messages on " +
+                        e.getKey() + ", but " + name + " sends " + b + " ===");
+                    ok = false;
+                }
+            }
+        }
+        if (ok)
+            System.out.println("=== PASSED SUCCESSFULLY ===");
+    }
+}
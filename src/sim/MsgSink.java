@@ -0,0 +1,10 @@
+package sim;
+
+/**
+ * Receives messages that node sends while it processes an event.
+ *
+ * @author Roman Elizarov
+ */
+public interface MsgSink<M extends AbstractMsg> {
+    void send(M msg);
+}
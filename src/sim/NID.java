@@ -1,22 +1,38 @@
 package sim;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
+ * Node id. Ids are interned and get dense indices in the order of creation, so that nodes can be stored in arrays.
+ *
  * @author Roman Elizarov
  */
 public class NID implements Comparable<NID> {
-    public static final NID DEST = new NID("0"); // fixed destination node (j) to compute distance to
+    private static final Map<String, NID> NIDS = new ConcurrentHashMap<>();
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    public static final NID DEST = getNID("0"); // fixed destination node (j) to compute distance to
+
     private final String name;
+    private final int index;
 
     public static NID getNID(String name) {
-        return new NID(name);
+        return NIDS.computeIfAbsent(name, n -> new NID(n, COUNT.getAndIncrement()));
     }
 
     public static NID getNID(int i) {
         return getNID("" + i);
     }
 
-    private NID(String name) {
+    private NID(String name, int index) {
         this.name = name;
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
     }
 
     @Override
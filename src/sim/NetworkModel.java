@@ -1,15 +1,43 @@
 package sim;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * @author Roman Elizarov
  */
 public class NetworkModel<M extends AbstractMsg, N extends AbstractNode<M>> {
-    private final Map<NID, N> nodes = new TreeMap<>();
-    private final List<M> msgs = new ArrayList<>();
+    private static final int PARALLEL_ROUND = 64; // min number of nodes in a round to process them in parallel
 
-    private final boolean log;
+    private final NodeTable<N> nodes = new NodeTable<>();
+    private List<M> msgs = new ArrayList<>();
+    private PriorityQueue<Timer<M>> timers = new PriorityQueue<>();
+    private LinkCounts pending = new LinkCounts(); // number of pending msgs over each link by linkKey
+    private final MsgSink<M> sink = this::send; // receives all messages that nodes send
+
+    // --- copy-on-write state that is shared with forks ---
+
+    private final BitSet shared = new BitSet(); // indices of nodes that can be shared with forks, copied on first change
+    private boolean queuesShared; // msgs, timers and pending are shared with forks, copied on first change
+
+    private long time; // virtual time, advances by one with each message processed over a link
+    private long timerSeq; // to fire timers with the same due time in order
+    private long sentCount; // total number of messages sent over links
+    private long roundSent; // sentCount after the last round, messages that are sent later are seed of the next one
+    private long processedCount; // total number of processed messages over links (not including timers)
+    private Map<NID, Map<NID, Integer>> batch; // link changes in the current batch (INF for removed), null if none
+
+    // --- incremental verification ---
+
+    private DistOracle oracle = new DistOracle(nodes); // true distances to destination
+    private final BitSet dirty = new BitSet(); // indices of nodes to verify: changed true distance or node state
+
+    private LinkStore store; // off-heap links of all nodes, null when not used
+
+    private final EventLog log; // null when events are not logged
+    private final List<Consumer<NID>> changeListeners = new ArrayList<>(); // told about nodes that are about to change
     private AbstractAlgo<M, N> algo;
 
     public static <M extends AbstractMsg, N extends AbstractNode<M>> NetworkModel<M, N> createNetworkModel(boolean log, AbstractAlgo<M, N> algo) {
@@ -17,10 +45,26 @@ public class NetworkModel<M extends AbstractMsg, N extends AbstractNode<M>> {
     }
 
     private NetworkModel(boolean log, AbstractAlgo<M, N> algo) {
-        this.log = log;
+        this.log = log ? EventLog.getDefault() : null;
         this.algo = algo;
     }
 
+    // keeps links of all nodes in off-heap store instead of their heap maps,
+    // must be called before nodes are created, forks are not supported
+    public void useOffHeapLinks() {
+        assert nodes.isEmpty() : "Must be called before nodes are created";
+        store = new LinkStore();
+    }
+
+    // adds listener that is told about nodes that are about to change or be removed, it is not inherited by forks
+    public void addChangeListener(Consumer<NID> listener) {
+        changeListeners.add(listener);
+    }
+
+    public LinkStore getLinkStore() {
+        return store;
+    }
+
     public AbstractAlgo getAlgo() {
         return algo;
     }
@@ -35,26 +79,102 @@ public class NetworkModel<M extends AbstractMsg, N extends AbstractNode<M>> {
 
     public N getNode(NID i) {
         N data = nodes.get(i);
-        if (data == null)
+        if (data == null) {
             nodes.put(i, data = algo.newNode(i));
+            if (store != null)
+                data.useLinkStore(store);
+            dirty.set(i.getIndex());
+        }
         return data;
     }
 
+    // node that is about to be changed, it is copied first if it is shared with forks
+    @SuppressWarnings("unchecked")
+    private N mutableNode(NID i) {
+        N node = getNode(i);
+        if (shared.get(i.getIndex())) {
+            shared.clear(i.getIndex());
+            nodes.put(i, node = (N) node.copy());
+        }
+        dirty.set(i.getIndex());
+        for (int k = 0; k < changeListeners.size(); k++)
+            changeListeners.get(k).accept(i);
+        return node;
+    }
+
+    // msgs, timers and pending counts that are about to be changed, they are copied first if they are shared with forks
+    @SuppressWarnings("unchecked")
+    private void mutableQueues() {
+        if (!queuesShared)
+            return;
+        queuesShared = false;
+        List<M> oldMsgs = msgs;
+        msgs = new ArrayList<>(oldMsgs.size());
+        for (M msg : oldMsgs)
+            msgs.add((M) msg.copy()); // firstOverLink flags are changed in place
+        timers = new PriorityQueue<>(timers);
+        pending = pending.copy();
+    }
+
+    // creates a copy of this model that shares nodes and pending messages with it until either one changes them,
+    // fork can be used in a different thread, but forks must be created from a single thread
+    public NetworkModel<M, N> fork() {
+        assert batch == null : "Cannot fork in batch";
+        assert store == null : "Cannot fork with off-heap links";
+        NetworkModel<M, N> fork = new NetworkModel<>(false, algo);
+        fork.nodes.putAll(nodes);
+        for (NID i : nodes.keySet()) {
+            shared.set(i.getIndex());
+            fork.shared.set(i.getIndex());
+        }
+        fork.msgs = msgs;
+        fork.timers = timers;
+        fork.pending = pending;
+        queuesShared = true;
+        fork.queuesShared = true;
+        fork.time = time;
+        fork.timerSeq = timerSeq;
+        fork.sentCount = sentCount;
+        fork.roundSent = roundSent;
+        fork.processedCount = processedCount;
+        fork.oracle = oracle.copy(fork.nodes);
+        fork.dirty.or(dirty);
+        return fork;
+    }
+
     public void removeNode(NID i) {
+        assert batch == null : "Cannot remove node in batch";
         removeNodeLinks(i);
         nodes.remove(i);
+        for (int k = 0; k < changeListeners.size(); k++)
+            changeListeners.get(k).accept(i);
+        shared.clear(i.getIndex());
+        oracle.removeNode(i);
+        dirty.clear(i.getIndex());
+        mutableQueues();
+        timers.removeIf(timer -> timer.msg.to.equals(i)); // drop node's pending timers
     }
 
     public void removeNodeLinks(NID i) {
-        N node = getNode(i);
-        Set<NID> links = new HashSet<>(node.getIncomingLinks());
+        N node = nodes.get(i);
+        if (node == null)
+            return;
+        Set<NID> links = new TreeSet<>(node.getIncomingLinks());
         links.addAll(node.getOutgoingLinks().keySet());
         for (NID j : links)
             removeLink(i, j);
     }
 
+    // does not create nodes
     public int getLink(NID from, NID to) {
-        return getNode(from).getOutgoingLink(to);
+        N node = nodes.get(from);
+        return node == null ? DistUtil.INF : node.getOutgoingLink(to);
+    }
+
+    // true if incoming link is known to the node, does not create nodes
+    private boolean hasIncomingLink(NID to, NID from) {
+        N node = nodes.get(to);
+        return node != null && node.getIncomingLinks().contains(from);
     }
 
     public void updateLink(NID from, NID to, int d) {
@@ -63,110 +183,349 @@ public class NetworkModel<M extends AbstractMsg, N extends AbstractNode<M>> {
             removeLink(from, to);
             return;
         }
-        if (log)
-            System.out.println("Updating link " + from + "->" + to + " d=" + DistUtil.d2s(d));
-        send(getNode(from).updateOutgoingLink(to, d));
-        send(getNode(to).updateIncomingLink(from));
+        if (batch != null) {
+            batch.computeIfAbsent(from, $ -> new TreeMap<>()).put(to, d);
+            return;
+        }
+        if (log != null)
+            log.link(EventLog.Type.UPDATE_LINK, time, from, to, d);
+        mutableNode(from).updateOutgoingLink(to, d, sink);
+        mutableNode(to).updateIncomingLink(from, sink);
+        oracle.linksChanged(Collections.singletonMap(from, Collections.singleton(to)), dirty);
+        fireTimers();
     }
 
     // NOTE: Link is always removed in both directions (does not work otherwise)
     public void removeLink(NID from, NID to) {
-        if (log)
-            System.out.println("Removing link " + from + "<->" + to );
-        send(getNode(from).removeLink(to));
-        send(getNode(to).removeLink(from));
+        if (batch != null) {
+            batch.computeIfAbsent(from, $ -> new TreeMap<>()).put(to, DistUtil.INF);
+            batch.computeIfAbsent(to, $ -> new TreeMap<>()).put(from, DistUtil.INF);
+            return;
+        }
+        if (log != null)
+            log.link(EventLog.Type.REMOVE_LINK, time, from, to, DistUtil.INF);
+        mutableNode(from).removeLink(to, sink);
+        mutableNode(to).removeLink(from, sink);
+        Map<NID, Set<NID>> changed = new HashMap<>();
+        changed.put(from, Collections.singleton(to));
+        changed.put(to, Collections.singleton(from));
+        oracle.linksChanged(changed, dirty);
+        dropMessages(from, to);
+        fireTimers();
+    }
+
+    private void dropMessages(NID from, NID to) {
+        mutableQueues();
         // Drop pending messages over link
         for (Iterator<M> it = msgs.iterator(); it.hasNext();) {
             M msg = it.next();
-            if (msg.isOverLink(from, to) || msg.isOverLink(to, from))
+            if (msg.isOverLink(from, to) || msg.isOverLink(to, from)) {
                 it.remove(); // drop pending messages across dropped link
+                pending.decrement(linkKey(msg.from, msg.to));
+            }
         }
-        // recompute first over link
-        recomputeFirstOverLink(from, to);
-        recomputeFirstOverLink(to, from);
     }
 
-    private void recomputeFirstOverLink(NID from, NID to) {
-        boolean first = true;
-        for (M msg : msgs) {
-            if (msg.isOverLink(from, to)) {
-                msg.firstOverLink = first;
-                first = false;
+    static long linkKey(NID from, NID to) {
+        return (long) from.getIndex() << 32 | to.getIndex();
+    }
+
+    // starts a batch of link updates and removals that are applied together on commitBatch
+    public void beginBatch() {
+        assert batch == null : "Batch was already started";
+        batch = new TreeMap<>();
+    }
+
+    // applies net change of links in the batch, each node sees its changes at once and
+    // all messages are sent after all the changes are applied
+    public void commitBatch() {
+        assert batch != null : "Batch was not started";
+        Map<NID, Map<NID, Integer>> changes = batch;
+        batch = null;
+        if (log != null)
+            log.count(EventLog.Type.COMMIT_BATCH, time, changes.values().stream().mapToInt(Map::size).sum(),
+                changes::toString);
+        Map<NID, Set<NID>> removed = new TreeMap<>();
+        Map<NID, Map<NID, Integer>> outgoing = new TreeMap<>();
+        Map<NID, Set<NID>> incoming = new TreeMap<>();
+        // removal of any direction removes link in both directions
+        changes.forEach((from, map) -> map.forEach((to, d) -> {
+            if (d == DistUtil.INF && (getLink(from, to) != DistUtil.INF || hasIncomingLink(to, from))) {
+                removed.computeIfAbsent(from, $ -> new TreeSet<>()).add(to);
+                removed.computeIfAbsent(to, $ -> new TreeSet<>()).add(from);
             }
-        }
+        }));
+        changes.forEach((from, map) -> map.forEach((to, d) -> {
+            if (d == DistUtil.INF)
+                return;
+            boolean wasRemoved = removed.getOrDefault(from, Collections.emptySet()).contains(to);
+            if (wasRemoved || getLink(from, to) != d)
+                outgoing.computeIfAbsent(from, $ -> new TreeMap<>()).put(to, d);
+            if (wasRemoved || !hasIncomingLink(to, from))
+                incoming.computeIfAbsent(to, $ -> new TreeSet<>()).add(from);
+        }));
+        Set<NID> affected = new TreeSet<>(removed.keySet());
+        affected.addAll(outgoing.keySet());
+        affected.addAll(incoming.keySet());
+        List<M> send = new ArrayList<>(); // sent after pending messages over removed links are dropped
+        for (NID i : affected)
+            mutableNode(i).updateLinks(
+                removed.getOrDefault(i, Collections.emptySet()),
+                outgoing.getOrDefault(i, Collections.emptyMap()),
+                incoming.getOrDefault(i, Collections.emptySet()),
+                send::add);
+        removed.forEach((from, set) -> set.forEach(to -> dropMessages(from, to)));
+        Map<NID, Set<NID>> changed = new HashMap<>();
+        removed.forEach((from, set) -> changed.computeIfAbsent(from, $ -> new HashSet<>()).addAll(set));
+        outgoing.forEach((from, map) -> changed.computeIfAbsent(from, $ -> new HashSet<>()).addAll(map.keySet()));
+        oracle.linksChanged(changed, dirty);
+        send.forEach(this::send);
+        fireTimers();
+    }
+
+    // true distance from the node to destination with current links, INF when it is not reachable
+    public int getTrueDist(NID i) {
+        return oracle.getDist(i);
     }
 
     public List<M> getMsgs() {
         return msgs;
     }
 
+    public boolean hasTimers() {
+        return !timers.isEmpty();
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
     public void processMessage(int i) {
+        assert batch == null : "Cannot process messages in batch";
+        mutableQueues();
         M msg = msgs.remove(i);
         assert msg.firstOverLink : "Cannot process non-first message " + msg;
-        for (M o : msgs) {
-            if (msg.isSameLink(o)) {
-                o.firstOverLink = true;
-                break;
+        long key = linkKey(msg.from, msg.to);
+        if (pending.decrement(key) > 0) {
+            // the next message over the same link is after the removed one
+            for (int j = i; j < msgs.size(); j++) {
+                M o = msgs.get(j);
+                if (msg.isSameLink(o)) {
+                    o.firstOverLink = true;
+                    break;
+                }
             }
         }
-        if (log)
-            System.out.println("Processing message " + msg);
-        send(getNode(msg.to).process(msg));
+        if (log != null)
+            log.msg(EventLog.Type.PROCESS_MSG, time, msg);
+        processedCount++;
+        mutableNode(msg.to).process(msg, sink);
+        time++;
+        fireTimers();
     }
 
-    public void clear() {
-        nodes.clear();
-        msgs.clear();
+    // processes rounds until there are no messages to process
+    public RoundStats processRounds() {
+        RoundStats stats = new RoundStats();
+        while (!msgs.isEmpty())
+            processRound(stats);
+        return stats;
     }
 
-    private void send(List<M> send) {
-        for (M msg : send) {
-            msg.firstOverLink = true;
-            for (M o : msgs) {
-                if (msg.isSameLink(o)) {
-                    msg.firstOverLink = false;
-                    break;
+    // delivers all messages that are first over their links at the start of the round, nodes process them
+    // in parallel and messages they send are queued after the round in the order of node ids,
+    // virtual time advances by one with each round
+    public void processRound(RoundStats stats) {
+        assert batch == null : "Cannot process messages in batch";
+        mutableQueues();
+        stats.addSeed((int) (sentCount - roundSent));
+        long sent = sentCount;
+        Map<NID, List<M>> round = new TreeMap<>(); // messages to deliver by receiving node in queue order
+        LinkCounts delivered = new LinkCounts(); // links whose next message becomes first over link
+        List<M> rest = new ArrayList<>(msgs.size());
+        for (M msg : msgs) {
+            long key = linkKey(msg.from, msg.to);
+            if (msg.firstOverLink) {
+                round.computeIfAbsent(msg.to, $ -> new ArrayList<>()).add(msg);
+                pending.decrement(key);
+                delivered.increment(key);
+            } else {
+                if (delivered.get(key) > 0) {
+                    delivered.decrement(key);
+                    msg.firstOverLink = true;
                 }
+                rest.add(msg);
             }
-            if (log)
-                System.out.println("Sending message " + msg);
-            msgs.add(msg);
         }
+        msgs = rest;
+        int processed = 0;
+        List<N> receivers = new ArrayList<>(round.size());
+        for (Map.Entry<NID, List<M>> e : round.entrySet()) {
+            receivers.add(mutableNode(e.getKey())); // copy-on-write is not thread-safe, so it is done upfront
+            processed += e.getValue().size();
+            if (log != null)
+                for (M msg : e.getValue())
+                    log.msg(EventLog.Type.PROCESS_MSG, time, msg);
+        }
+        List<List<M>> messages = new ArrayList<>(round.values());
+        IntStream indices = IntStream.range(0, receivers.size());
+        if (receivers.size() >= PARALLEL_ROUND)
+            indices = indices.parallel();
+        List<List<M>> sends = indices.mapToObj(k -> {
+            List<M> send = new ArrayList<>();
+            for (M msg : messages.get(k))
+                receivers.get(k).process(msg, send::add);
+            return send;
+        }).collect(Collectors.toList());
+        processedCount += processed;
+        sends.forEach(send -> send.forEach(this::send));
+        time++;
+        fireTimers();
+        stats.add(processed, (int) (sentCount - sent), round.size());
+        roundSent = sentCount;
     }
 
-    public String verifyInQuiescentState() {
-        assert msgs.isEmpty() : "Must be called in quiescent state only";
-        // now compute Dijkstra distances
-        Map<NID,Integer> dist = new HashMap<>();
-        Set<NID> queue = new HashSet<>();
-        dist.put(NID.DEST, 0);
-        queue.add(NID.DEST);
-        while (!queue.isEmpty()) {
-            NID cur = null;
-            int best = DistUtil.INF;
-            for (NID nid : queue) {
-                if (dist.get(nid) < best) {
-                    cur = nid;
-                    best = dist.get(nid);
-                }
-            }
-            queue.remove(cur);
-            for (NID i : nodes.get(cur).getIncomingLinks()) {
-                int d = nodes.get(i).getOutgoingLink(cur);
-                if (!dist.containsKey(i) || best + d < dist.get(i)) {
-                    dist.put(i, best + d);
-                    queue.add(i);
-                }
-            }
+    // fires timers that are due, advances virtual time to the next timer when there are no messages to process
+    private void fireTimers() {
+        while (!timers.isEmpty() && (timers.peek().due <= time || msgs.isEmpty())) {
+            mutableQueues();
+            Timer<M> timer = timers.remove();
+            time = Math.max(time, timer.due);
+            if (log != null)
+                log.msg(EventLog.Type.FIRE_TIMER, time, timer.msg);
+            mutableNode(timer.msg.to).process(timer.msg, sink);
+        }
+    }
+
+    public void clear() {
+        nodes.clear();
+        shared.clear();
+        oracle = new DistOracle(nodes);
+        dirty.clear();
+        if (store != null)
+            store.clear();
+        msgs = new ArrayList<>();
+        timers = new PriorityQueue<>();
+        pending = new LinkCounts();
+        queuesShared = false;
+        batch = null;
+        time = 0;
+        sentCount = 0;
+        roundSent = 0;
+        processedCount = 0;
+    }
+
+    private void send(M msg) {
+        mutableQueues();
+        if (msg.isLocal()) {
+            if (log != null)
+                log.msg(EventLog.Type.SCHEDULE_TIMER, time, msg);
+            timers.add(new Timer<>(time + msg.delay, timerSeq++, msg));
+            return;
         }
-        // now verify distances in nodes
+        msg.firstOverLink = pending.increment(linkKey(msg.from, msg.to)) == 1;
+        if (log != null)
+            log.msg(EventLog.Type.SEND_MSG, time, msg);
+        sentCount++;
+        msgs.add(msg);
+    }
+
+    // creates links between nodes in converged state without sending any messages when the algorithm supports it,
+    // otherwise links are updated in a batch
+    public void loadConverged(Map<NID, Map<NID, Integer>> links) {
+        assert msgs.isEmpty() && timers.isEmpty() : "Must be called in quiescent state only";
+        for (N node : nodes.values())
+            assert node.ln.isEmpty() && node.in.isEmpty() : "Must be called before links are created";
+        if (log != null)
+            log.count(EventLog.Type.LOAD_CONVERGED, time, links.size(), links::toString);
+        getNode(NID.DEST);
+        links.forEach((from, map) -> map.forEach((to, d) -> {
+            getNode(from);
+            getNode(to);
+        }));
+        new ArrayList<>(nodes.keySet()).forEach(this::mutableNode);
+        links.forEach((from, map) -> map.forEach((to, d) -> {
+            nodes.get(from).ln.put(to, d);
+            nodes.get(to).in.add(from);
+        }));
+        oracle.rebuild();
+        Map<NID, Integer> dist = oracle.getDistances();
+        boolean converged = true;
+        for (N node : nodes.values())
+            if (!node.initConverged(dist, links)) {
+                converged = false;
+                break;
+            }
+        if (converged)
+            return;
+        // not supported -- fall back to batch of link updates
         for (N node : nodes.values()) {
-            NID i = node.getId();
-            int td = dist.containsKey(i) ? dist.get(i) : DistUtil.INF; // true Dijkstra distances
-            String text = node.verifyQuiescentDistance(td);
+            node.ln.clear();
+            node.in.clear();
+        }
+        oracle.rebuild();
+        beginBatch();
+        links.forEach((from, map) -> map.forEach((to, d) -> updateLink(from, to, d)));
+        commitBatch();
+    }
+
+    // verifies only nodes whose true distance or state had changed since the last successful verification
+    public String verifyInQuiescentState() {
+        assert msgs.isEmpty() && timers.isEmpty() : "Must be called in quiescent state only";
+        for (int k = dirty.nextSetBit(0); k >= 0; k = dirty.nextSetBit(k + 1)) {
+            N node = nodes.get(k);
+            if (node == null)
+                continue; // was removed
+            String text = node.verifyQuiescentDistance(oracle.getDist(node.getId())); // true distance
             if (text != null)
                 return text;
         }
+        dirty.clear();
+        return null; // Ok
+    }
+
+    // verifies all nodes from scratch, true distances are computed over a snapshot of links
+    // and nodes are verified in parallel, for large networks
+    public String verifyAllInQuiescentState() {
+        assert msgs.isEmpty() && timers.isEmpty() : "Must be called in quiescent state only";
+        List<N> list = new ArrayList<>(nodes.values());
+        CsrGraph graph = new CsrGraph(list);
+        int[] dist = graph.distances();
+        Optional<String> text = IntStream.range(0, list.size()).parallel()
+            .mapToObj(k -> {
+                assert dist[k] == oracle.getDist(graph.ids[k]) : "Oracle distance mismatch at node " + graph.ids[k];
+                return list.get(k).verifyQuiescentDistance(dist[k]);
+            })
+            .filter(Objects::nonNull)
+            .findFirst();
+        if (text.isPresent())
+            return text.get();
+        dirty.clear();
         return null; // Ok
     }
+
+    private static class Timer<M> implements Comparable<Timer<M>> {
+        final long due;
+        final long seq;
+        final M msg;
+
+        Timer(long due, long seq, M msg) {
+            this.due = due;
+            this.seq = seq;
+            this.msg = msg;
+        }
+
+        @Override
+        public int compareTo(Timer<M> o) {
+            return due != o.due ? Long.compare(due, o.due) : Long.compare(seq, o.seq);
+        }
+    }
 }
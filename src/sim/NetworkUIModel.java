@@ -91,14 +91,14 @@ public class NetworkUIModel  {
     }
 
     public void updateAlgo(String name) {
-        System.out.println("Updating algo to " + name);
+        EventLog.getDefault().name(EventLog.Type.UPDATE_ALGO, 0, name);
         NetworkModel<?, ?> newModel = NetworkModel.createNetworkModel(true, AlgoFactory.createAlgo(name));
+        Map<NID, Map<NID, Integer>> links = new TreeMap<>();
         for (NID i : model.getNIDs()) {
             newModel.getNode(i);// create node
-            for (Map.Entry<NID, Integer> link : model.getNode(i).getOutgoingLinks().entrySet()) {
-                newModel.updateLink(i, link.getKey(), link.getValue());
-            }
+            links.put(i, new TreeMap<>(model.getNode(i).getOutgoingLinks()));
         }
+        newModel.loadConverged(links); // start in converged state
         model = newModel;
         fireNodeUpdateListeners();
         fireMsgUpdateListeners();
@@ -0,0 +1,113 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Immutable next hops of all nodes by NID index, compiled from the routing state of the model, so that forwarding
+ * does not call into nodes. Next hops of each node (its links with the given flag) and distances of links to them
+ * are kept in per-node int arrays that are grouped into chunks of {@code CHUNK} nodes. {@link #update} recompiles
+ * only nodes that changed into a new table that copies only the chunks with them and shares the rest.
+ *
+ * @author Roman Elizarov
+ */
+public class NextHopTable {
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK = 1 << CHUNK_BITS; // nodes in a chunk
+    private static final int[] NONE = new int[0];
+
+    public static final NextHopTable EMPTY = new NextHopTable(0, new int[0][][], new int[0][][]);
+
+    private final int size;
+    private final int[][][] hops; // next hops of node k are hops[k >> CHUNK_BITS][k & (CHUNK - 1)]
+    private final int[][][] costs; // distances of links to next hops in the same order
+
+    private NextHopTable(int size, int[][][] hops, int[][][] costs) {
+        this.size = size;
+        this.hops = hops;
+        this.costs = costs;
+    }
+
+    // table with next hops of changed nodes recompiled by their links with the flag, this table when none changed
+    public NextHopTable update(NetworkModel<?, ?> model, Collection<NID> changed, int flag) {
+        if (changed.isEmpty())
+            return this;
+        int size = this.size;
+        for (NID i : changed)
+            size = Math.max(size, i.getIndex() + 1);
+        int chunks = (size + CHUNK - 1) >> CHUNK_BITS;
+        int[][][] hops = Arrays.copyOf(this.hops, chunks);
+        int[][][] costs = Arrays.copyOf(this.costs, chunks);
+        for (int c = this.hops.length; c < chunks; c++) {
+            hops[c] = newChunk();
+            costs[c] = newChunk();
+        }
+        for (NID i : changed) {
+            int k = i.getIndex();
+            int c = k >> CHUNK_BITS;
+            if (c < this.hops.length && hops[c] == this.hops[c]) {
+                hops[c] = hops[c].clone(); // the first change in the chunk
+                costs[c] = costs[c].clone();
+            }
+            AbstractNode<?> node = model.getNIDs().contains(i) ? model.getNode(i) : null;
+            if (node == null || i.equals(NID.DEST)) {
+                hops[c][k & (CHUNK - 1)] = NONE;
+                costs[c][k & (CHUNK - 1)] = NONE;
+            } else
+                compileNode(node, flag, hops[c], costs[c], k & (CHUNK - 1));
+        }
+        return new NextHopTable(size, hops, costs);
+    }
+
+    private static int[][] newChunk() {
+        int[][] chunk = new int[CHUNK][];
+        Arrays.fill(chunk, NONE);
+        return chunk;
+    }
+
+    private static void compileNode(AbstractNode<?> node, int flag, int[][] hops, int[][] costs, int r) {
+        Map<NID, Integer> links = node.getOutgoingLinks();
+        int[] h = new int[links.size()];
+        int[] c = new int[links.size()];
+        int n = 0;
+        for (Map.Entry<NID, Integer> e : links.entrySet())
+            if ((node.getLinkFlags(e.getKey()) & flag) != 0) {
+                h[n] = e.getKey().getIndex();
+                c[n++] = e.getValue();
+            }
+        hops[r] = n == 0 ? NONE : Arrays.copyOf(h, n);
+        costs[r] = n == 0 ? NONE : Arrays.copyOf(c, n);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getHopCount(int node) {
+        return node < 0 || node >= size ? 0 : hops[node >> CHUNK_BITS][node & (CHUNK - 1)].length;
+    }
+
+    public int getHop(int node, int k) {
+        assert k < getHopCount(node) : "Hop " + k + " of " + node;
+        return hops[node >> CHUNK_BITS][node & (CHUNK - 1)][k];
+    }
+
+    // distance of the link to k-th next hop
+    public int getCost(int node, int k) {
+        assert k < getHopCount(node) : "Hop " + k + " of " + node;
+        return costs[node >> CHUNK_BITS][node & (CHUNK - 1)][k];
+    }
+
+    // number of the next hop of node that hash picks (the same flow takes the same path), -1 when there is none
+    public int pickHop(int node, int hash) {
+        int n = getHopCount(node);
+        if (n <= 1)
+            return n - 1;
+        return Math.floorMod(hash ^ node * 0x9e3779b9, n);
+    }
+
+    // next hop of node that hash picks, -1 when there is none
+    public int nextHop(int node, int hash) {
+        int k = pickHop(node, hash);
+        return k < 0 ? -1 : getHop(node, k);
+    }
+}
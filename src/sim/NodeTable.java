@@ -0,0 +1,117 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Nodes of the model in an array that is indexed by {@link NID#getIndex()}.
+ * Lookups are O(1), while iteration is in the order of node ids over their sorted snapshot
+ * that is rebuilt only when nodes are added or removed.
+ *
+ * @author Roman Elizarov
+ */
+class NodeTable<N extends AbstractNode<?>> extends AbstractMap<NID, N> {
+    private Object[] table = new Object[16];
+    private int size;
+    private NID[] sorted; // sorted ids of all nodes, null when it needs to be rebuilt
+
+    @SuppressWarnings("unchecked")
+    N get(int index) {
+        return index < table.length ? (N) table[index] : null;
+    }
+
+    @Override
+    public N get(Object key) {
+        return key instanceof NID ? get(((NID) key).getIndex()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public N put(NID key, N value) {
+        int index = key.getIndex();
+        if (index >= table.length)
+            table = Arrays.copyOf(table, Math.max(index + 1, table.length * 2));
+        N old = get(index);
+        table[index] = value;
+        if (old == null) {
+            size++;
+            sorted = null;
+        }
+        return old;
+    }
+
+    @Override
+    public N remove(Object key) {
+        N old = get(key);
+        if (old != null) {
+            table[((NID) key).getIndex()] = null;
+            size--;
+            sorted = null;
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, null);
+        size = 0;
+        sorted = null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private NID[] sorted() {
+        if (sorted == null) {
+            NID[] ids = new NID[size];
+            int k = 0;
+            for (Object node : table)
+                if (node != null)
+                    ids[k++] = ((AbstractNode<?>) node).getId();
+            Arrays.sort(ids);
+            sorted = ids;
+        }
+        return sorted;
+    }
+
+    @Override
+    public Set<Entry<NID, N>> entrySet() {
+        return new AbstractSet<Entry<NID, N>>() {
+            @Override
+            public Iterator<Entry<NID, N>> iterator() {
+                NID[] ids = sorted();
+                return new Iterator<Entry<NID, N>>() {
+                    int k;
+
+                    @Override
+                    public boolean hasNext() {
+                        return k < ids.length;
+                    }
+
+                    @Override
+                    public Entry<NID, N> next() {
+                        if (k >= ids.length)
+                            throw new NoSuchElementException();
+                        NID id = ids[k++];
+                        return new SimpleImmutableEntry<>(id, get(id));
+                    }
+
+                    @Override
+                    public void remove() {
+                        NodeTable.this.remove(ids[k - 1]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
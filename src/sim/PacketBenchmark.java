@@ -0,0 +1,59 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Forwards packets over the routing state of algorithms with {@link PacketSim} while they converge.
+ * A random network starts in converged state, then random links fail and recover one by one while messages
+ * are processed in random order, and packets are sent from random sources after every processed message.
+ * The sequence of link changes is the same for every algorithm. Reports shares of delivered, looped and
+ * blackholed packets and of packets from sources without a path, average and max stretch of delivered paths,
+ * and forwarding rate.
+ * Takes a list of algorithm names (with options like "DFB:SH") as arguments, multipath forwarding over
+ * successor sets is reported for loop-free algorithms in addition to forwarding over routes.
+ *
+ * @author Roman Elizarov
+ */
+public class PacketBenchmark<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int NODES = 50;
+    private static final int CHANGES = 200;
+    private static final int PACKETS_PER_STEP = 1000;
+
+    public static void main(String[] args) {
+        System.out.printf("%-16s %-10s %12s %10s %10s %10s %10s %10s %10s %10s%n", "Algo", "Forwarding", "Packets",
+            "Delivered", "Looped", "Blackholed", "No path", "Stretch", "Max", "Mpps");
+        for (String name : args) {
+            new PacketBenchmark<>(name).go(false);
+            if (AlgoFactory.createAlgo(name).isLoopFree())
+                new PacketBenchmark<>(name).go(true);
+        }
+    }
+
+    private final String name;
+    private long nanos; // forwarding time
+
+    public PacketBenchmark(String name) {
+        this.name = name;
+    }
+
+    private void go(boolean multipath) {
+        NetworkModel<M, N> model = AlgoFactory.createModel(name);
+        RandomNetwork network = new RandomNetwork(NODES, new Random(RandomNetwork.SEED));
+        Random order = new Random(RandomNetwork.SEED);
+        Random packets = new Random(RandomNetwork.SEED);
+        network.converge(model);
+        PacketSim sim = new PacketSim(model, multipath);
+        network.churn(model, CHANGES, order, () -> {
+            sim.update();
+            long t0 = System.nanoTime();
+            sim.send(PACKETS_PER_STEP, packets);
+            nanos += System.nanoTime() - t0;
+        });
+        double sent = sim.getSent();
+        System.out.printf("%-16s %-10s %12d %9.3f%% %9.3f%% %9.3f%% %9.3f%% %10.3f %10.2f %10.1f%n", name,
+            multipath ? "successor" : "route", sim.getSent(), 100 * sim.getDelivered() / sent,
+            100 * sim.getLooped() / sent, 100 * sim.getBlackholed() / sent, 100 * sim.getUnreachable() / sent,
+            sim.getAverageStretch(),
+            sim.getMaxStretch(), sent * 1000 / nanos);
+    }
+}
@@ -0,0 +1,132 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Data plane of the model: packets from random sources are forwarded toward destination over the links of the
+ * current routing state. Each node forwards by its LINK_ROUTE links, or by its LINK_BOLD links (successor set)
+ * in multipath mode, picking one of them by the hash of the packet. Packets are forwarded over
+ * {@link NextHopTable} that is recompiled on {@link #update} only for nodes that changed. Packet is looped when it
+ * makes more hops than there are nodes, and is blackholed when it reaches a node without next hops while its source
+ * has a path to the destination. Stretch of a delivered packet is the distance of its path divided by the true
+ * distance from its source at the time it is sent.
+ *
+ * @author Roman Elizarov
+ */
+public class PacketSim {
+    private static final int[] NONE = new int[0];
+
+    private final NetworkModel<?, ?> model;
+    private final int flag;
+    private final Set<NID> changed = new HashSet<>(); // nodes to recompile next hops of on update
+    private NextHopTable table = NextHopTable.EMPTY;
+
+    // --- by NID index ---
+
+    private int[] dist = new int[0]; // true distances to destination, INF when not reachable
+    private int[] sources = NONE; // indices of nodes that send packets
+    private int dest;
+
+    // --- statistics ---
+
+    private long sent;
+    private long delivered;
+    private long looped;
+    private long blackholed;
+    private long unreachable; // packets from sources without a path to destination
+    private double stretch; // sum over delivered packets
+    private double maxStretch;
+    private long packetSeq;
+
+    public PacketSim(NetworkModel<?, ?> model, boolean multipath) {
+        this.model = model;
+        flag = multipath ? AbstractNode.LINK_BOLD : AbstractNode.LINK_ROUTE;
+        model.getNode(NID.DEST);
+        for (AbstractNode<?> node : model.getNodes())
+            changed.add(node.getId());
+        update();
+        model.addChangeListener(changed::add);
+    }
+
+    // recompiles next hops of nodes that changed since the last update
+    public void update() {
+        table = table.update(model, changed, flag);
+        changed.clear();
+        int size = table.size();
+        for (NID i : model.getNIDs())
+            size = Math.max(size, i.getIndex() + 1);
+        // true distances change with links
+        dist = new int[size];
+        int n = 0;
+        int[] src = new int[size];
+        for (NID i : model.getNIDs()) {
+            dist[i.getIndex()] = model.getTrueDist(i);
+            if (!i.equals(NID.DEST))
+                src[n++] = i.getIndex();
+        }
+        sources = Arrays.copyOf(src, n);
+        dest = NID.DEST.getIndex();
+    }
+
+    // sends packets from random sources
+    public void send(int count, Random rnd) {
+        if (sources.length == 0)
+            return;
+        int maxHops = sources.length + 1;
+        for (int p = 0; p < count; p++) {
+            int v = sources[rnd.nextInt(sources.length)];
+            int d0 = dist[v];
+            int hash = (int) Fingerprint.mix(packetSeq++);
+            int hopCount = 0;
+            long cost = 0;
+            while (v != dest) {
+                int k = table.pickHop(v, hash); // the same flow takes the same path
+                if (k < 0 || hopCount == maxHops)
+                    break;
+                cost += table.getCost(v, k);
+                v = table.getHop(v, k);
+                hopCount++;
+            }
+            sent++;
+            if (v == dest) {
+                delivered++;
+                double s = d0 == 0 || d0 == DistUtil.INF ? 1 : (double) cost / d0;
+                stretch += s;
+                maxStretch = Math.max(maxStretch, s);
+            } else if (d0 == DistUtil.INF)
+                unreachable++;
+            else if (hopCount == maxHops)
+                looped++;
+            else
+                blackholed++;
+        }
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getDelivered() {
+        return delivered;
+    }
+
+    public long getLooped() {
+        return looped;
+    }
+
+    public long getBlackholed() {
+        return blackholed;
+    }
+
+    public long getUnreachable() {
+        return unreachable;
+    }
+
+    public double getAverageStretch() {
+        return delivered == 0 ? 0 : stretch / delivered;
+    }
+
+    public double getMaxStretch() {
+        return maxStretch;
+    }
+}
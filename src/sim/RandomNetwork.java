@@ -0,0 +1,134 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Random connected network with bidirectional links for checks and benchmarks: every node is linked to
+ * some node with a smaller number and to a few more random nodes, distances are random in the given range.
+ * The same random generator is used for later changes of links, so that the whole scenario is defined by its seed.
+ * Static helpers link nodes directly in the model and deliver random first messages over links.
+ *
+ * @author Roman Elizarov
+ */
+public class RandomNetwork {
+    public static final int SEED = 1;
+    public static final int MIN_D = 1;
+    public static final int MAX_D = 100;
+
+    private final int minD;
+    private final int maxD;
+    private final Random rnd;
+    private final Map<NID, Map<NID, Integer>> links = new TreeMap<>();
+    private final List<NID[]> pairs = new ArrayList<>(); // bidirectional links in the order they were made
+
+    // one extra random link of each node and default distances
+    public RandomNetwork(int nodes, Random rnd) {
+        this(nodes, 1, MIN_D, MAX_D, rnd);
+    }
+
+    public RandomNetwork(int nodes, int extraLinks, int minD, int maxD, Random rnd) {
+        this.minD = minD;
+        this.maxD = maxD;
+        this.rnd = rnd;
+        for (int i = 1; i < nodes; i++) {
+            biLink(i, rnd.nextInt(i));
+            for (int k = 0; k < extraLinks; k++) {
+                int j = rnd.nextInt(nodes);
+                if (j != i)
+                    biLink(i, j);
+            }
+        }
+    }
+
+    private void biLink(int i, int j) {
+        NID a = NID.getNID(i);
+        NID b = NID.getNID(j);
+        if (links.containsKey(a) && links.get(a).containsKey(b))
+            return; // random extra link that is already there
+        int d = randomDist();
+        links.computeIfAbsent(a, $ -> new TreeMap<>()).put(b, d);
+        links.computeIfAbsent(b, $ -> new TreeMap<>()).put(a, d);
+        pairs.add(new NID[] { a, b });
+    }
+
+    private int randomDist() {
+        return minD + rnd.nextInt(maxD - minD + 1);
+    }
+
+    // initial links, like loadConverged takes them
+    public Map<NID, Map<NID, Integer>> getLinks() {
+        return links;
+    }
+
+    public List<NID[]> getPairs() {
+        return pairs;
+    }
+
+    // all initial links in one batch
+    public void updateBatch(NetworkModel<?, ?> model) {
+        model.beginBatch();
+        links.forEach((from, map) -> map.forEach((to, d) -> model.updateLink(from, to, d)));
+        model.commitBatch();
+    }
+
+    // initial links in converged state
+    public void converge(NetworkModel<?, ?> model) {
+        model.getNode(NID.DEST);
+        model.loadConverged(links);
+        while (!model.getMsgs().isEmpty())
+            model.processMessage(0); // when the algorithm does not support converged state
+    }
+
+    // fails a random initial link when it is up or recovers it with a random distance when it is down
+    public void changeRandomLink(NetworkModel<?, ?> model) {
+        NID[] pair = pairs.get(rnd.nextInt(pairs.size()));
+        if (model.getLink(pair[0], pair[1]) != DistUtil.INF)
+            model.removeLink(pair[0], pair[1]);
+        else
+            biLink(model, pair[0], pair[1], randomDist());
+    }
+
+    // changes random links one by one, each change is followed by processing of all messages, see processAll
+    public void churn(NetworkModel<?, ?> model, int changes, Random order, Runnable step) {
+        for (int k = 0; k < changes; k++) {
+            changeRandomLink(model);
+            processAll(model, order, step);
+        }
+    }
+
+    public static void biLink(NetworkModel<?, ?> model, NID a, NID b, int d) {
+        model.updateLink(a, b, d);
+        model.updateLink(b, a, d);
+    }
+
+    // processes a random message that is first over its link, so that messages over each link stay FIFO
+    public static void processRandomMessage(NetworkModel<?, ?> model, Random rnd) {
+        int i;
+        do {
+            i = rnd.nextInt(model.getMsgs().size());
+        } while (!model.getMsgs().get(i).firstOverLink);
+        model.processMessage(i);
+    }
+
+    public static void processAll(NetworkModel<?, ?> model, Random rnd) {
+        while (!model.getMsgs().isEmpty())
+            processRandomMessage(model, rnd);
+    }
+
+    // runs step before every random message and once more when all messages are processed
+    public static void processAll(NetworkModel<?, ?> model, Random rnd, Runnable step) {
+        while (true) {
+            step.run();
+            if (model.getMsgs().isEmpty())
+                break;
+            processRandomMessage(model, rnd);
+        }
+    }
+
+    // prints failure when the model is not in correct quiescent state
+    public static void verify(NetworkModel<?, ?> model) {
+        String text = model.verifyInQuiescentState();
+        if (text != null)
+            System.out.println("=== FAIL: " + text + " ===");
+    }
+}
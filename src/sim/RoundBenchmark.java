@@ -0,0 +1,92 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Compares convergence of algorithms in synchronous rounds, where each round delivers all messages that are
+ * first over their links, so that results do not depend on random order of message delivery.
+ * Reports the number of rounds to quiescence, messages that are sent since the scenario started (including seed
+ * messages that link changes send before rounds), the seed alone, average messages per round and the peak frontier
+ * (the max number of nodes that process messages in one round).
+ * Takes a list of algorithm names (with options like "DFB:SH") as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class RoundBenchmark<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int SEED = 1;
+
+    private static final int RANDOM_NODES = 100;
+    private static final int RANDOM_FAILURES = 10;
+    private static final int MIN_D = 1;
+    private static final int MAX_D = 100;
+
+    private static final int[] TOPOLOGY_SIZES = { 10, 20, 40 };
+
+    public static void main(String[] args) {
+        System.out.printf("%-16s %-12s %12s %12s %12s %12s %12s%n", "Algo", "Scenario", "Rounds", "Messages", "Seed",
+            "Msgs/round", "Peak nodes");
+        for (String name : args) {
+            new RoundBenchmark<>(name).go();
+        }
+    }
+
+    private final String name;
+
+    public RoundBenchmark(String name) {
+        this.name = name;
+    }
+
+    private void go() {
+        random();
+        for (int n : TOPOLOGY_SIZES)
+            chain(n, false);
+        for (int n : TOPOLOGY_SIZES)
+            chain(n, true);
+    }
+
+    // cold start of a random connected network, then failures of random links one by one
+    private void random() {
+        NetworkModel<M, N> model = newModel();
+        Random rnd = new Random(SEED);
+        RandomNetwork network = new RandomNetwork(RANDOM_NODES, 1, MIN_D, MAX_D, rnd);
+        network.updateBatch(model);
+        report("cold-" + RANDOM_NODES, model, model.processRounds());
+        List<NID[]> failures = new ArrayList<>(network.getPairs());
+        Collections.shuffle(failures, rnd);
+        RoundStats stats = new RoundStats();
+        for (int k = 0; k < RANDOM_FAILURES && k < failures.size(); k++) {
+            model.removeLink(failures.get(k)[0], failures.get(k)[1]);
+            while (!model.getMsgs().isEmpty())
+                model.processRound(stats);
+        }
+        report("fail-" + RANDOM_NODES, model, stats);
+    }
+
+    // chain of n nodes to destination with bidirectional links, link at destination is cut after convergence,
+    // when ring is true then the last node is also linked to the first one, so that chain is closed into a ring
+    private void chain(int n, boolean ring) {
+        NetworkModel<M, N> model = newModel();
+        model.beginBatch();
+        for (int i = 1; i <= n; i++)
+            RandomNetwork.biLink(model, NID.getNID(i), NID.getNID(i - 1), 1);
+        if (ring)
+            RandomNetwork.biLink(model, NID.getNID(n), NID.getNID(1), 1);
+        model.commitBatch();
+        model.processRounds();
+        model.removeLink(NID.getNID(1), NID.DEST);
+        report((ring ? "ring-" : "chain-") + n, model, model.processRounds());
+    }
+
+    @SuppressWarnings("unchecked")
+    private NetworkModel<M, N> newModel() {
+        return NetworkModel.createNetworkModel(false, AlgoFactory.createAlgo(name));
+    }
+
+    private void report(String scenario, NetworkModel<M, N> model, RoundStats stats) {
+        System.out.printf("%-16s %-12s %12d %12d %12d %12.1f %12d%n", name, scenario,
+            stats.getRounds(), stats.getSent(), stats.getSeed(), stats.getSentPerRound(), stats.getPeakFrontier());
+        String text = model.verifyInQuiescentState();
+        if (text != null)
+            System.out.println("=== FAIL: " + text + " ===");
+    }
+}
@@ -0,0 +1,70 @@
+package sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statistics of synchronous rounds that are processed by {@link NetworkModel#processRound}.
+ * Frontier of the round is the number of nodes that process messages in it. Messages that are sent outside
+ * of rounds (by link changes) before a round are its seed, they are counted as sent in round 0.
+ *
+ * @author Roman Elizarov
+ */
+public class RoundStats {
+    private final List<int[]> rounds = new ArrayList<>(); // processed messages, sent messages, frontier by round
+    private long processed;
+    private long sent; // including seed
+    private long seed;
+    private int peakFrontier;
+
+    void addSeed(int sent) {
+        seed += sent;
+        this.sent += sent;
+    }
+
+    void add(int processed, int sent, int frontier) {
+        rounds.add(new int[] { processed, sent, frontier });
+        this.processed += processed;
+        this.sent += sent;
+        peakFrontier = Math.max(peakFrontier, frontier);
+    }
+
+    public int getRounds() {
+        return rounds.size();
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getPeakFrontier() {
+        return peakFrontier;
+    }
+
+    public double getSentPerRound() {
+        return rounds.isEmpty() ? 0 : (double) sent / rounds.size();
+    }
+
+    // messages sent in each round, not including seed
+    public int[] getSentByRound() {
+        return rounds.stream().mapToInt(r -> r[1]).toArray();
+    }
+
+    public int[] getFrontierByRound() {
+        return rounds.stream().mapToInt(r -> r[2]).toArray();
+    }
+
+    @Override
+    public String toString() {
+        return "rounds=" + getRounds() + " processed=" + processed + " sent=" + sent + " seed=" + seed +
+            " peakFrontier=" + peakFrontier;
+    }
+}
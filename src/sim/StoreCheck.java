@@ -0,0 +1,139 @@
+package sim;
+
+import java.util.*;
+
+/**
+ * Cross-checks views of off-heap {@link LinkStore} against heap maps and sets on random puts and removes
+ * of links between random nodes, including removes via iterators and changes of rows while they are iterated,
+ * over many compactions of the store. Rows of all nodes are compared after every so many changes.
+ * Takes optional number of nodes and number of changes as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class StoreCheck {
+    private static final int SEED = 1;
+    private static final int NODES = 200;
+    private static final int CHANGES = 1_000_000;
+    private static final int COMPARE_CHANGES = 1000; // all rows are compared every so many changes
+    private static final int MIN_D = 1;
+    private static final int MAX_D = 100;
+    private static final double REMOVE_PR = 0.4;
+    private static final double ITERATOR_PR = 0.01;
+
+    private static final Comparator<NID> BY_INDEX = Comparator.comparingInt(NID::getIndex);
+
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : NODES;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : CHANGES;
+        new StoreCheck(nodes).go(changes);
+    }
+
+    private final int nodes;
+    private final Random rnd = new Random(SEED);
+    private final LinkStore store = new LinkStore();
+    private final Map<NID, Map<NID, Integer>> out = new HashMap<>();
+    private final Map<NID, Set<NID>> in = new HashMap<>();
+
+    private StoreCheck(int nodes) {
+        this.nodes = nodes;
+    }
+
+    private void go(int changes) {
+        System.out.println("Checking link store with " + nodes + " nodes");
+        for (int k = 1; k <= changes; k++) {
+            change();
+            if (k % COMPARE_CHANGES == 0)
+                compareAll();
+            if (k % Math.max(changes / 100, 1) == 0)
+                System.out.print('.');
+        }
+        System.out.println();
+        System.out.println("Made " + store.getCompactions() + " compactions, " + store.size() + " links left");
+        store.clear();
+        for (int i = 0; i < nodes; i++)
+            if (!store.outgoing(nid(i)).isEmpty() || !store.incoming(nid(i)).isEmpty())
+                fail("Links of " + nid(i) + " are left after clear");
+        System.out.println("=== PASSED SUCCESSFULLY ===");
+    }
+
+    private NID nid(int i) {
+        return NID.getNID(i);
+    }
+
+    private NID randomNode() {
+        // lower indices are used more often, so that some rows are long and some stay empty for a while
+        return nid(Math.min(rnd.nextInt(nodes), rnd.nextInt(nodes)));
+    }
+
+    private void change() {
+        NID a = randomNode();
+        NID b = randomNode();
+        Map<NID, Integer> so = store.outgoing(a);
+        Map<NID, Integer> ho = out.computeIfAbsent(a, $ -> new HashMap<>());
+        Set<NID> si = store.incoming(a);
+        Set<NID> hi = in.computeIfAbsent(a, $ -> new HashSet<>());
+        if (rnd.nextDouble() < ITERATOR_PR) {
+            // remove some links via iterators, and put others into the same row while iterating
+            for (Iterator<NID> it = so.keySet().iterator(); it.hasNext(); ) {
+                NID c = it.next();
+                if (rnd.nextBoolean()) {
+                    it.remove();
+                    ho.remove(c);
+                } else
+                    check(so.put(b, MIN_D), ho.put(b, MIN_D), "put while iterating " + a + "->" + b);
+            }
+            for (Iterator<NID> it = si.iterator(); it.hasNext(); ) {
+                NID c = it.next();
+                if (rnd.nextBoolean()) {
+                    it.remove();
+                    hi.remove(c);
+                }
+            }
+        } else if (rnd.nextDouble() < REMOVE_PR) {
+            check(so.remove(b), ho.remove(b), "remove " + a + "->" + b);
+            check(si.remove(b), hi.remove(b), "remove incoming " + a + "<-" + b);
+        } else {
+            int d = MIN_D + rnd.nextInt(MAX_D - MIN_D + 1);
+            check(so.put(b, d), ho.put(b, d), "put " + a + "->" + b);
+            check(si.add(b), hi.add(b), "add incoming " + a + "<-" + b);
+        }
+        compare(a);
+    }
+
+    private void compareAll() {
+        long size = 0;
+        for (int i = 0; i < nodes; i++) {
+            compare(nid(i));
+            size += out.getOrDefault(nid(i), Collections.emptyMap()).size();
+        }
+        check(store.size(), size, "size");
+    }
+
+    private void compare(NID a) {
+        Map<NID, Integer> ho = out.getOrDefault(a, Collections.emptyMap());
+        Set<NID> hi = in.getOrDefault(a, Collections.emptySet());
+        // row views iterate in the order of node indices
+        Map<NID, Integer> so = new TreeMap<>(BY_INDEX);
+        so.putAll(ho);
+        Set<NID> si = new TreeSet<>(BY_INDEX);
+        si.addAll(hi);
+        check(new ArrayList<>(store.outgoing(a).entrySet()), new ArrayList<>(so.entrySet()), "outgoing links of " + a);
+        check(new ArrayList<>(store.incoming(a)), new ArrayList<>(si), "incoming links of " + a);
+        check(store.outgoing(a).size(), ho.size(), "number of outgoing links of " + a);
+        check(store.incoming(a).size(), hi.size(), "number of incoming links of " + a);
+        NID b = randomNode();
+        check(store.outgoing(a).get(b), ho.get(b), "link " + a + "->" + b);
+        check(store.incoming(a).contains(b), hi.contains(b), "incoming link " + a + "<-" + b);
+    }
+
+    private static void check(Object actual, Object expected, String what) {
+        if (!Objects.equals(actual, expected))
+            fail("Store has " + actual + " as " + what + ", but should have " + expected);
+    }
+
+    private static void fail(String s) {
+        System.out.println();
+        System.out.println("=== FAIL: " + s + " ===");
+        System.exit(1);
+    }
+}
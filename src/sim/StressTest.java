@@ -1,5 +1,7 @@
 package sim;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -17,46 +19,81 @@ public class StressTest<M extends AbstractMsg, N extends AbstractNode<M>> {
     private static final int MIN_D = 1;
     private static final int MAX_D = 100;
     private static final int BATCHES = 100_000;
+    private static final int FULL_VERIFY_BATCHES = 1000; // all nodes are verified from scratch every so many batches
+
+    private static final String TRACE_FILE = "fail.trace";
 
     private static final double REMOVE_LINK_PR = 0.25;
     private static final double REMOVE_NODE_PR = 0.01;
     private static final double MORE_PR = 0.25;
 
-    @SuppressWarnings("unchecked")
+    // optional second argument is the first batch number, network of the corresponding size is loaded
+    // in converged state to skip cold start
     public static void main(String[] args) {
-        new StressTest(AlgoFactory.createAlgo(args[0])).go();
+        new StressTest(args[0]).go(args.length > 1 ? Integer.parseInt(args[1]) : 0);
     }
 
+    private final String name;
     private final NetworkModel<M, N> model;
     private final Random rnd = new Random(SEED);
+    private int batchNo; // the current batch
+    private int traceBatch = -1; // events are traced starting from this batch when the failure is regenerated
+    private Trace trace; // recorded only when the test is run again to save the failure
 
-    public StressTest(AbstractAlgo<M, N> algo) {
-        model = NetworkModel.createNetworkModel(DEBUG, algo);
+    @SuppressWarnings("unchecked")
+    public StressTest(String name) {
+        this.name = name;
+        model = NetworkModel.createNetworkModel(DEBUG, AlgoFactory.createAlgo(name));
     }
 
-    private void go() {
+    private void go(int firstBatch) {
         System.out.println("Testing " + model.getAlgo().getClass().getName());
-        int batchNo = 0;
-        while (batchNo < BATCHES) {
-            processBatch(batchNo);
-            batchNo++;
-            if (!DEBUG) {
-                // only print dots
-                if (batchNo % 100 == 0)
-                    System.out.print('.');
-                if (batchNo % 10000 == 0)
-                    System.out.println();
+        String failure = run(firstBatch, BATCHES, true);
+        if (failure == null) {
+            System.out.println("=== PASSED SUCCESSFULLY ===");
+            return;
+        }
+        System.out.println();
+        System.out.println("=== FAIL: " + failure + " ===");
+        report();
+        saveTrace(firstBatch, batchNo, failure);
+        System.exit(1);
+    }
+
+    // processes batches until the last one (exclusive) or until failure, returns failure or null
+    private String run(int firstBatch, int lastBatch, boolean progress) {
+        batchNo = firstBatch;
+        try {
+            String failure = firstBatch > 0 ? warmStart(firstBatch) : null;
+            while (failure == null && batchNo < lastBatch) {
+                failure = processBatch(batchNo);
+                if (failure != null)
+                    break;
+                batchNo++;
+                if (progress && !DEBUG) {
+                    // only print dots
+                    if (batchNo % 100 == 0)
+                        System.out.print('.');
+                    if (batchNo % 10000 == 0)
+                        System.out.println();
+                }
             }
+            return failure;
+        } catch (Throwable t) {
+            if (progress)
+                t.printStackTrace(System.out);
+            return t.toString();
         }
-        System.out.println("=== PASSED SUCCESSFULLY ===");
     }
 
-    private void processBatch(int batchNo) {
+    private String processBatch(int batchNo) {
         // report state before batch in debug mode
         if (DEBUG) {
             System.out.println("-----");
             report();
         }
+        if (batchNo == traceBatch)
+            startTrace(batchNo);
         // make a batch of changes
         int nu = MIN_UPDATES + rnd.nextInt((MAX_UPDATES - MIN_UPDATES) * batchNo / BATCHES + 1);
         for (int i = 0; i < nu; i++)
@@ -74,19 +111,38 @@ public class StressTest<M extends AbstractMsg, N extends AbstractNode<M>> {
                 i = rnd.nextInt(model.getMsgs().size());
             } while (!model.getMsgs().get(i).firstOverLink);
             // process message
+            M msg = model.getMsgs().get(i);
+            record(Trace.Type.DELIVER, msg.from, msg.to, 0);
             model.processMessage(i);
         }
         // and verify
-        String text = model.verifyInQuiescentState();
-        if (text != null)
-            fail(text);
+        record(Trace.Type.VERIFY, null, null, 0);
+        return batchNo % FULL_VERIFY_BATCHES == 0 ?
+            model.verifyAllInQuiescentState() : model.verifyInQuiescentState();
+    }
+
+    private String warmStart(int batchNo) {
+        int nn = MIN_NODES + (MAX_NODES - MIN_NODES) * batchNo / BATCHES;
+        Map<NID, Map<NID, Integer>> links = new TreeMap<>();
+        for (int k = 0; k < 2 * nn; k++) {
+            NID from = NID.getNID(rnd.nextInt(nn));
+            NID to = NID.getNID(rnd.nextInt(nn));
+            if (!from.equals(to))
+                links.computeIfAbsent(from, $ -> new TreeMap<>()).put(to, MIN_D + rnd.nextInt(MAX_D - MIN_D + 1));
+        }
+        model.loadConverged(links);
+        if (!model.getMsgs().isEmpty())
+            return null; // algorithm does not support it, messages are processed with the first batch
+        return model.verifyAllInQuiescentState();
     }
 
     private void randomUpdate(int batchNo) {
         int nn = MIN_NODES + (MAX_NODES - MIN_NODES) * batchNo / BATCHES;
         if (rnd.nextDouble() < REMOVE_NODE_PR) {
             // remove node
-            model.removeNodeLinks(NID.getNID(rnd.nextInt(nn)));
+            NID i = NID.getNID(rnd.nextInt(nn));
+            record(Trace.Type.NODE, i, null, 0);
+            model.removeNodeLinks(i);
             return;
         }
         // update/remove link
@@ -96,17 +152,65 @@ public class StressTest<M extends AbstractMsg, N extends AbstractNode<M>> {
             from = NID.getNID(rnd.nextInt(nn));
             to = NID.getNID(rnd.nextInt(nn));
         } while (from.equals(to));
-        if (rnd.nextDouble() < REMOVE_LINK_PR)
+        if (rnd.nextDouble() < REMOVE_LINK_PR) {
+            record(Trace.Type.REMOVE, from, to, 0);
             model.removeLink(from, to);
-        else
-            model.updateLink(from, to, MIN_D + rnd.nextInt((MAX_D - MIN_D) * batchNo / BATCHES + 1));
+        } else {
+            int d = MIN_D + rnd.nextInt((MAX_D - MIN_D) * batchNo / BATCHES + 1);
+            record(Trace.Type.LINK, from, to, d);
+            model.updateLink(from, to, d);
+        }
     }
 
-    private void fail(String s) {
-        System.out.println();
-        System.out.println("=== FAIL: " + s + " ===");
-        report();
-        System.exit(1);
+    private void record(Trace.Type type, NID a, NID b, int d) {
+        if (trace != null)
+            trace.add(type, a, b, d);
+    }
+
+    // trace starts with a batch of all links that converges to the state before the traced batch
+    private void startTrace(int batchNo) {
+        trace = new Trace();
+        trace.add(Trace.Type.BATCH);
+        for (N node : model.getNodes())
+            node.getOutgoingLinks().forEach((to, d) -> trace.add(Trace.Type.LINK, node.getId(), to, d));
+        trace.add(Trace.Type.COMMIT);
+        trace.add(Trace.Type.DRAIN);
+    }
+
+    // the test is run again from the seed with the trace of the failed batch, and then of more batches before it,
+    // until the trace reproduces the failure, because the state of nodes (feasible distances, sequence numbers,
+    // hold-down) can depend on the history that a batch of all links does not recreate
+    private void saveTrace(int firstBatch, int failedBatch, String failure) {
+        String signature = TraceMinimizer.signature(failure);
+        TraceMinimizer minimizer = new TraceMinimizer(name);
+        Trace saved;
+        boolean reproduced;
+        int from;
+        int span = 1;
+        do {
+            from = Math.max(failedBatch - span + 1, firstBatch);
+            StressTest<M, N> test = new StressTest<>(name);
+            test.traceBatch = from;
+            test.run(firstBatch, failedBatch + 1, false);
+            saved = test.trace;
+            if (saved == null) {
+                System.out.println("Failed before the first batch, no trace is saved");
+                return;
+            }
+            reproduced = minimizer.fails(saved.getEvents(), signature);
+            span *= 2;
+        } while (!reproduced && from > firstBatch);
+        saved.addComment(name + " batches " + from + ".." + failedBatch +
+            (reproduced ? "" : ", does not reproduce the failure"));
+        File file = new File(TRACE_FILE);
+        try {
+            saved.write(file);
+        } catch (IOException e) {
+            System.out.println("Failed to save trace: " + e);
+            return;
+        }
+        System.out.println("Trace of batches " + from + ".." + failedBatch + " is saved to " + file +
+            (reproduced ? ", use sim.TraceMinimizer to shrink it" : ", but it does not reproduce the failure"));
     }
 
     private void report() {
@@ -0,0 +1,218 @@
+package sim;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Replayable trace of link changes and message deliveries in text form, one event per line:
+ * <pre>
+ * batch              -- begin batch of link changes
+ * link from to d     -- update link
+ * commit             -- commit batch
+ * remove from to     -- remove link in both directions
+ * node i             -- remove all links of the node
+ * deliver from to    -- process the first message over the link, skipped when there is none
+ * drain              -- process all messages in the order they were sent
+ * verify             -- drain and verify quiescent state
+ * </pre>
+ * Lines starting with '#' are comments. Messages that are left at the end of the trace are drained.
+ * Takes algorithm name (with options like "DFB:SH") and trace file name as arguments, replays the trace printing
+ * all events and the final state of nodes, like {@code CmdLineDemo} does.
+ *
+ * @author Roman Elizarov
+ */
+public class Trace {
+    public static final int MAX_STEPS = 1_000_000; // failure if messages are not drained in this many steps
+
+    public enum Type { BATCH, LINK, COMMIT, REMOVE, NODE, DELIVER, DRAIN, VERIFY }
+
+    public static class Event {
+        public final Type type;
+        public final NID a;
+        public final NID b;
+        public final int d;
+
+        public Event(Type type, NID a, NID b, int d) {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+            this.d = d;
+        }
+
+        public static Event parse(String line) {
+            String[] s = line.trim().split("\\s+");
+            Type type = Type.valueOf(s[0].toUpperCase(Locale.US));
+            return new Event(type,
+                s.length > 1 ? NID.getNID(s[1]) : null,
+                s.length > 2 ? NID.getNID(s[2]) : null,
+                s.length > 3 ? Integer.parseInt(s[3]) : 0);
+        }
+
+        @Override
+        public String toString() {
+            return type.name().toLowerCase(Locale.US) +
+                (a != null ? " " + a : "") + (b != null ? " " + b : "") + (type == Type.LINK ? " " + d : "");
+        }
+    }
+
+    public static class Result {
+        public long sent;
+        public long processed;
+        public long time;
+        public String failure; // null when all verifications pass
+        public int failedAt = -1; // index of event that failed, -1 if none
+
+        @Override
+        public String toString() {
+            return "messages=" + sent + " steps=" + processed + " time=" + time +
+                (failure != null ? " FAIL at event " + failedAt + ": " + failure : "");
+        }
+    }
+
+    private final List<String> comments = new ArrayList<>();
+    private final List<Event> events;
+
+    public Trace() {
+        events = new ArrayList<>();
+    }
+
+    public Trace(List<Event> events) {
+        this.events = new ArrayList<>(events);
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public void add(Type type, NID a, NID b, int d) {
+        events.add(new Event(type, a, b, d));
+    }
+
+    public void add(Type type) {
+        add(type, null, null, 0);
+    }
+
+    public void addComment(String comment) {
+        comments.add(comment);
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    public static Trace read(File file) throws IOException {
+        Trace trace = new Trace();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("#"))
+                trace.comments.add(line.substring(1).trim());
+            else if (!line.trim().isEmpty())
+                trace.events.add(Event.parse(line));
+        }
+        return trace;
+    }
+
+    public void write(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            comments.forEach(c -> out.println("# " + c));
+            events.forEach(out::println);
+        }
+    }
+
+    // replays trace on a model, stops at the first failure, prints events and processed messages when out is not null
+    public <M extends AbstractMsg, N extends AbstractNode<M>> Result replay(NetworkModel<M, N> model, PrintStream out) {
+        Result result = new Result();
+        long sent0 = model.getSentCount();
+        long processed0 = model.getProcessedCount();
+        long time0 = model.getTime();
+        int k = 0;
+        try {
+            for (; k < events.size(); k++) {
+                Event e = events.get(k);
+                if (out != null && e.type != Type.DELIVER)
+                    out.println("> " + e);
+                switch (e.type) {
+                    case BATCH:
+                        model.beginBatch();
+                        break;
+                    case LINK:
+                        model.updateLink(e.a, e.b, e.d);
+                        break;
+                    case COMMIT:
+                        model.commitBatch();
+                        break;
+                    case REMOVE:
+                        model.removeLink(e.a, e.b);
+                        break;
+                    case NODE:
+                        model.removeNodeLinks(e.a);
+                        break;
+                    case DELIVER:
+                        deliver(model, e.a, e.b, out);
+                        break;
+                    case DRAIN:
+                        result.failure = drain(model, processed0, out);
+                        break;
+                    case VERIFY:
+                        result.failure = drain(model, processed0, out);
+                        if (result.failure == null)
+                            result.failure = model.verifyInQuiescentState();
+                }
+                if (result.failure != null)
+                    break;
+            }
+            if (result.failure == null)
+                result.failure = drain(model, processed0, out);
+        } catch (Throwable t) {
+            result.failure = t.toString();
+        }
+        if (result.failure != null)
+            result.failedAt = k; // events.size() when it fails at the final drain
+        result.sent = model.getSentCount() - sent0;
+        result.processed = model.getProcessedCount() - processed0;
+        result.time = model.getTime() - time0;
+        return result;
+    }
+
+    private static <M extends AbstractMsg> void deliver(NetworkModel<M, ?> model, NID from, NID to, PrintStream out) {
+        List<M> msgs = model.getMsgs();
+        for (int i = 0; i < msgs.size(); i++) {
+            M msg = msgs.get(i);
+            if (msg.firstOverLink && msg.from.equals(from) && msg.to.equals(to)) {
+                if (out != null)
+                    out.println("Processing message " + msg);
+                model.processMessage(i);
+                return;
+            }
+        }
+    }
+
+    static <M extends AbstractMsg> String drain(NetworkModel<M, ?> model, long processed0, PrintStream out) {
+        while (!model.getMsgs().isEmpty()) {
+            if (model.getProcessedCount() - processed0 >= MAX_STEPS)
+                return "Not converged in " + MAX_STEPS + " steps";
+            if (out != null)
+                out.println("Processing message " + model.getMsgs().get(0));
+            model.processMessage(0); // the oldest message is always first over its link
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws IOException {
+        read(new File(args[1])).print(args[0], System.out);
+    }
+
+    // replays trace on a new model of the algorithm, prints all events, the final state of nodes and the result
+    @SuppressWarnings("unchecked")
+    public Result print(String name, PrintStream out) {
+        NetworkModel<AbstractMsg, AbstractNode<AbstractMsg>> model =
+            NetworkModel.createNetworkModel(false, AlgoFactory.createAlgo(name));
+        model.getNode(NID.DEST);
+        comments.forEach(c -> out.println("# " + c));
+        Result result = replay(model, out);
+        model.getNodes().forEach(out::println);
+        out.println(result);
+        return result;
+    }
+}
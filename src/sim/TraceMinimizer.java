@@ -0,0 +1,116 @@
+package sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Shrinks a failing {@link Trace} (like the one that {@link StressTest} saves on failure) with delta debugging:
+ * chunks of events (link changes and delivery choices) are removed while the trace still fails the same check,
+ * then chunks get smaller down to single events. Candidates that are not well-formed (a batch without its commit
+ * or with deliveries inside it) are skipped, and the rest are replayed in parallel on all available processors.
+ * Failures are the same when they differ only in numbers (node ids and distances), so an exception is the same
+ * when its class and message match. The smallest trace is saved to "file.min" and is printed like
+ * {@code CmdLineDemo} does. Takes algorithm name (with options like "DFB:SH") and trace file name as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class TraceMinimizer {
+    public static void main(String[] args) throws IOException {
+        File file = new File(args[1]);
+        new TraceMinimizer(args[0]).go(Trace.read(file), new File(file.getPath() + ".min"));
+    }
+
+    private final String name;
+
+    public TraceMinimizer(String name) {
+        this.name = name;
+    }
+
+    private void go(Trace trace, File out) throws IOException {
+        Trace.Result result = replay(trace.getEvents());
+        if (result.failure == null) {
+            System.out.println("Trace does not fail: " + result);
+            return;
+        }
+        String signature = signature(result.failure);
+        System.out.println("Minimizing " + trace.size() + " events that fail with " + signature);
+        List<Trace.Event> events = minimize(trace.getEvents(), signature);
+        Trace min = new Trace(events);
+        min.addComment(name + " minimized from " + trace.size() + " to " + events.size() + " events");
+        min.write(out);
+        System.out.println("Saved " + out);
+        min.print(name, System.out);
+    }
+
+    // the check that fails (or the exception with its message) without specific numbers
+    static String signature(String failure) {
+        return failure.replaceAll("\\d+", "#");
+    }
+
+    // batches are not nested, are committed, and have only link changes in them
+    static boolean isWellFormed(List<Trace.Event> events) {
+        boolean batch = false;
+        for (Trace.Event e : events) {
+            switch (e.type) {
+                case BATCH:
+                case COMMIT:
+                    if (batch == (e.type == Trace.Type.BATCH))
+                        return false;
+                    batch = !batch;
+                    break;
+                case DELIVER:
+                case DRAIN:
+                case VERIFY:
+                    if (batch)
+                        return false;
+            }
+        }
+        return !batch;
+    }
+
+    private Trace.Result replay(List<Trace.Event> events) {
+        NetworkModel<AbstractMsg, AbstractNode<AbstractMsg>> model = newModel();
+        model.getNode(NID.DEST);
+        return new Trace(events).replay(model, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private NetworkModel<AbstractMsg, AbstractNode<AbstractMsg>> newModel() {
+        return NetworkModel.createNetworkModel(false, AlgoFactory.createAlgo(name));
+    }
+
+    boolean fails(List<Trace.Event> events, String signature) {
+        String failure = replay(events).failure;
+        return failure != null && signature(failure).equals(signature);
+    }
+
+    private List<Trace.Event> minimize(List<Trace.Event> events, String signature) {
+        int n = 2; // number of chunks
+        while (events.size() >= 2) {
+            List<Trace.Event> cur = events;
+            int size = cur.size();
+            int chunks = Math.min(n, size);
+            // removes k-th chunk, the first candidate that still fails is taken
+            List<Trace.Event> found = IntStream.range(0, chunks).parallel()
+                .mapToObj(k -> {
+                    List<Trace.Event> candidate = new ArrayList<>(cur.subList(0, k * size / chunks));
+                    candidate.addAll(cur.subList((k + 1) * size / chunks, size));
+                    return candidate;
+                })
+                .filter(candidate -> isWellFormed(candidate) && fails(candidate, signature))
+                .findFirst()
+                .orElse(null);
+            if (found != null) {
+                events = found;
+                n = Math.max(chunks - 1, 2);
+                System.out.println("Reduced to " + events.size() + " events");
+            } else if (chunks < size) {
+                n = Math.min(2 * chunks, size);
+            } else
+                break; // no single event can be removed
+        }
+        return events;
+    }
+}
@@ -8,7 +8,7 @@ import java.awt.*;
  * @author Roman Elizarov
  */
 public class UIDemo {
-    private static final String[] ALGOS = {"DFB", "DPVA", "MDVA", "MDVAm", "SPTA"};
+    private static final String[] ALGOS = {"DFB", "DFB:SH", "DFB:PR", "DFB:HD", "DPVA", "MDVA", "MDVAm", "SPTA", "SPTA:K=2", "LS", "SDVA", "SDN", "HLS"};
     private static final String DEFAULT_ALGO = "DFB";
     private static final int NID_COL_WIDTH = 50;
     private static final int DESC_COL_WIDTH = 200;
@@ -0,0 +1,162 @@
+package sim;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * What-if analysis of single link failures. Random topology is loaded in converged state, then for each link
+ * the model is forked, the link is removed and the fork is run to quiescence. Forks share nodes with the
+ * converged model until they change them, and run in parallel on all available processors.
+ * Failures are ranked by the number of messages it takes to reconverge.
+ * Takes algorithm name (with options like "DFB:SH"), optional number of nodes and random seed as arguments.
+ *
+ * @author Roman Elizarov
+ */
+public class WhatIf<M extends AbstractMsg, N extends AbstractNode<M>> {
+    private static final int NODES = 20;
+    private static final int SEED = 1;
+    private static final int MIN_D = 1;
+    private static final int MAX_D = 100;
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        int nn = args.length > 1 ? Integer.parseInt(args[1]) : NODES;
+        int seed = args.length > 2 ? Integer.parseInt(args[2]) : SEED;
+        new WhatIf<>(AlgoFactory.createAlgo(args[0]), nn, seed).go();
+    }
+
+    private final NetworkModel<M, N> model;
+    private final int nn;
+    private final int seed;
+
+    public WhatIf(AbstractAlgo<M, N> algo, int nn, int seed) {
+        model = NetworkModel.createNetworkModel(false, algo);
+        this.nn = nn;
+        this.seed = seed;
+    }
+
+    private void go() throws Exception {
+        System.out.println("Analyzing " + model.getAlgo().getClass().getName());
+        Random rnd = new Random(seed);
+        RandomNetwork network = new RandomNetwork(nn, 1, MIN_D, MAX_D, rnd);
+        model.loadConverged(network.getLinks());
+        RandomNetwork.processAll(model, rnd);
+        String text = model.verifyAllInQuiescentState();
+        if (text != null) {
+            System.out.println("=== FAIL: " + text + " ===");
+            return;
+        }
+        List<NID[]> failures = network.getPairs(); // bidirectional links to fail
+        Map<NID, Set<NID>> routes0 = routes(model);
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int k = 0; k < failures.size(); k++) {
+            NetworkModel<M, N> fork = model.fork(); // forks are created from this thread only
+            NID[] link = failures.get(k);
+            long forkSeed = seed + k;
+            futures.add(pool.submit(() -> fail(fork, link[0], link[1], routes0, new Random(forkSeed))));
+        }
+        List<Result> results = new ArrayList<>();
+        for (Future<Result> future : futures)
+            results.add(future.get());
+        pool.shutdown();
+        results.sort(Comparator.comparingLong((Result r) -> r.messages).reversed()
+            .thenComparing(Comparator.comparingLong((Result r) -> r.time).reversed()));
+        System.out.printf("%-12s %12s %12s %12s %12s %12s%n", "Link", "Messages", "Steps", "Time", "Affected", "Loop time");
+        for (Result r : results) {
+            System.out.printf("%-12s %12d %12d %12d %12d %12d%n", r.from + "<->" + r.to,
+                r.messages, r.steps, r.time, r.affected, r.loopTime);
+            if (r.text != null)
+                System.out.println("=== FAIL: " + r.text + " ===");
+        }
+    }
+
+    private Result fail(NetworkModel<M, N> fork, NID from, NID to, Map<NID, Set<NID>> routes0, Random rnd) {
+        Result r = new Result(from, to);
+        long sent0 = fork.getSentCount();
+        long processed0 = fork.getProcessedCount();
+        long time0 = fork.getTime();
+        Set<NID> affected = new HashSet<>();
+        fork.removeLink(from, to);
+        long loopSince = -1; // virtual time when routes had got a loop, -1 if none
+        while (true) {
+            Map<NID, Set<NID>> routes = routes(fork);
+            routes.forEach((i, s) -> {
+                if (!s.equals(routes0.getOrDefault(i, Collections.emptySet())))
+                    affected.add(i);
+            });
+            boolean loop = hasLoop(routes);
+            if (loop && loopSince < 0)
+                loopSince = fork.getTime();
+            if (!loop && loopSince >= 0) {
+                r.loopTime += fork.getTime() - loopSince;
+                loopSince = -1;
+            }
+            if (fork.getMsgs().isEmpty())
+                break;
+            RandomNetwork.processRandomMessage(fork, rnd);
+        }
+        if (loopSince >= 0)
+            r.loopTime += fork.getTime() - loopSince; // routes stay in a loop
+        r.messages = fork.getSentCount() - sent0;
+        r.steps = fork.getProcessedCount() - processed0;
+        r.time = fork.getTime() - time0;
+        r.affected = affected.size();
+        r.text = fork.verifyInQuiescentState();
+        return r;
+    }
+
+    // next hops of all nodes by LINK_ROUTE flag
+    static Map<NID, Set<NID>> routes(NetworkModel<?, ?> model) {
+        return linksWithFlag(model, AbstractNode.LINK_ROUTE);
+    }
+
+    // outgoing links of all nodes that have the given flag
+    static Map<NID, Set<NID>> linksWithFlag(NetworkModel<?, ?> model, int flag) {
+        Map<NID, Set<NID>> links = new HashMap<>();
+        for (AbstractNode<?> node : model.getNodes()) {
+            Set<NID> s = new HashSet<>();
+            for (NID m : node.getOutgoingLinks().keySet())
+                if ((node.getLinkFlags(m) & flag) != 0)
+                    s.add(m);
+            links.put(node.getId(), s);
+        }
+        return links;
+    }
+
+    static boolean hasLoop(Map<NID, Set<NID>> routes) {
+        Map<NID, Boolean> done = new HashMap<>(); // false while node is on DFS stack
+        for (NID i : routes.keySet())
+            if (hasLoop(i, routes, done))
+                return true;
+        return false;
+    }
+
+    private static boolean hasLoop(NID i, Map<NID, Set<NID>> routes, Map<NID, Boolean> done) {
+        Boolean d = done.get(i);
+        if (d != null)
+            return !d;
+        done.put(i, false);
+        for (NID j : routes.getOrDefault(i, Collections.emptySet()))
+            if (hasLoop(j, routes, done))
+                return true;
+        done.put(i, true);
+        return false;
+    }
+
+    private static class Result {
+        final NID from;
+        final NID to;
+        long messages; // sent to reconverge
+        long steps; // processed to reconverge
+        long time; // virtual time to reconverge
+        int affected; // nodes that had changed their routes
+        long loopTime; // virtual time while routes had a loop
+        String text; // verification failure, null if ok
+
+        Result(NID from, NID to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
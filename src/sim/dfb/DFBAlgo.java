@@ -3,8 +3,10 @@ package sim.dfb;
 import sim.AbstractAlgo;
 import sim.NID;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Distributed Ford-Bellman algorithm: factory class.
@@ -12,16 +14,52 @@ import java.util.List;
  * @author Roman Elizarov
  */
 public class DFBAlgo extends AbstractAlgo<DFBMsg, DFBNode> {
+    public static final String MRAI_OPTION = "MRAI=";
+
+    private final DFBMode mode;
+    private final int mrai;
+
+    public DFBAlgo() {
+        this(DFBMode.PLAIN, 0);
+    }
+
+    /**
+     * Options are separated by comma: mode name and/or "MRAI=n" for minimal route advertisement interval,
+     * for example "SH,MRAI=10".
+     */
+    public DFBAlgo(String options) {
+        DFBMode mode = DFBMode.PLAIN;
+        int mrai = 0;
+        for (String option : options.split(",")) {
+            if (option.startsWith(MRAI_OPTION))
+                mrai = Integer.parseInt(option.substring(MRAI_OPTION.length()));
+            else
+                mode = DFBMode.valueOf(option.toUpperCase(Locale.US));
+        }
+        this.mode = mode;
+        this.mrai = mrai;
+    }
+
+    public DFBAlgo(DFBMode mode, int mrai) {
+        this.mode = mode;
+        this.mrai = mrai;
+    }
+
     @Override
     public List<String> getAlgoDescription() {
-        return Arrays.asList(
+        List<String> list = new ArrayList<>(Arrays.asList(
             "Distributed Ford-Bellman Algorithm",
             "Count-to-infinity is avoided by limiting distance to " + DFBNode.MAX_DIST
-        );
+        ));
+        if (mode != DFBMode.PLAIN)
+            list.add(mode.description);
+        if (mrai > 0)
+            list.add("Updates to each neighbour are sent at most once per " + mrai + " time units");
+        return list;
     }
 
     @Override
     public DFBNode newNode(NID i) {
-        return new DFBNode(i);
+        return new DFBNode(i, mode, mrai);
     }
 }
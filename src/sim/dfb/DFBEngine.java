@@ -0,0 +1,340 @@
+package sim.dfb;
+
+import sim.DistUtil;
+import sim.NID;
+
+import java.util.*;
+
+/**
+ * Distributed Ford-Bellman algorithm: engine for large networks that keeps state of all nodes in flat int arrays
+ * over compressed sparse row graph and pending messages in int ring buffer, so that there is no allocation
+ * per message. It processes the same events as {@link DFBNode} and delivers messages in the order they were sent.
+ * Links that are added after start are chained per node in overflow arrays that grow by doubling, the set of nodes
+ * is fixed. Hold-down and MRAI timers are not supported.
+ *
+ * @author Roman Elizarov
+ */
+public class DFBEngine {
+    private final DFBMode mode;
+
+    private final NID[] ids; // sorted node ids by index
+    private final int dest; // index of destination, -1 if there is none
+
+    // --- outgoing links, base links are in rows, added links are chained in overflow ---
+
+    private final int[] outStart; // base outgoing links of node k are at outStart[k] until outStart[k + 1]
+    private final int[] extra; // the last added outgoing link of each node, -1 if none
+    private int m; // number of links, links are never deleted, but are INF when removed
+
+    private int[] next; // previous added outgoing link of the same node, -1 if none
+    private int[] outFrom; // node that link goes from
+    private int[] outTo; // node that link goes to
+    private int[] outD; // link distance, INF when removed
+    private int[] dn; // distance as reported by the neighbour over the link
+    private int[] rev; // reverse link, -1 if none
+    private int[] sn; // distance last sent back over the link by the node it goes to
+
+    // --- incoming links of each node in the order they came up, in node order at start ---
+
+    private final int[] inFirst; // the first incoming link of each node, -1 if none
+    private final int[] inLast; // the last incoming link of each node, -1 if none
+    private int[] inNext; // next incoming link of the same node, -1 if none
+    private int[] inPrev; // previous incoming link of the same node, -1 if none
+
+    private final int[] rd; // last computed distance of each node
+
+    // --- pending messages as (outgoing link at receiver, distance) pairs ---
+
+    private int[] ring = new int[1024];
+    private int head; // index of the first pending message
+    private int tail; // index after the last pending message
+    private int[] pend; // number of pending messages over each link
+    private int[] stale; // number of pending messages over each link that were sent before it was removed
+
+    private long sentCount;
+    private long processedCount;
+
+    public DFBEngine(DFBMode mode, Map<NID, Map<NID, Integer>> links) {
+        if (mode.holdDown)
+            throw new IllegalArgumentException("Hold-down is not supported");
+        this.mode = mode;
+        // index nodes in sorted order
+        SortedSet<NID> all = new TreeSet<>();
+        all.add(NID.DEST);
+        links.forEach((from, map) -> {
+            all.add(from);
+            all.addAll(map.keySet());
+        });
+        int n = all.size();
+        ids = all.toArray(new NID[n]);
+        Map<NID, Integer> index = new HashMap<>(n * 2);
+        for (int k = 0; k < n; k++)
+            index.put(ids[k], k);
+        dest = index.getOrDefault(NID.DEST, -1);
+        for (Map<NID, Integer> map : links.values())
+            m += map.size();
+        allocate(Math.max(m, 16));
+        // outgoing links
+        outStart = new int[n + 1];
+        extra = new int[n];
+        Arrays.fill(extra, -1);
+        int e = 0;
+        for (int k = 0; k < n; k++) {
+            outStart[k] = e;
+            Map<NID, Integer> map = links.get(ids[k]);
+            if (map == null)
+                continue;
+            for (Map.Entry<NID, Integer> entry : map.entrySet()) {
+                outFrom[e] = k;
+                outTo[e] = index.get(entry.getKey());
+                outD[e++] = entry.getValue();
+            }
+        }
+        outStart[n] = e;
+        // incoming links in node order
+        inFirst = new int[n];
+        inLast = new int[n];
+        Arrays.fill(inFirst, -1);
+        Arrays.fill(inLast, -1);
+        for (e = 0; e < m; e++) {
+            rev[e] = findOut(outTo[e], outFrom[e]);
+            append(e);
+        }
+        rd = new int[n];
+        Arrays.fill(rd, DistUtil.INF);
+        if (dest >= 0)
+            rd[dest] = 0;
+    }
+
+    // per link arrays of the given capacity, new links are INF and are not incoming anywhere
+    private void allocate(int capacity) {
+        next = grow(next, capacity, -1);
+        outFrom = grow(outFrom, capacity, -1);
+        outTo = grow(outTo, capacity, -1);
+        outD = grow(outD, capacity, DistUtil.INF);
+        dn = grow(dn, capacity, DistUtil.INF);
+        rev = grow(rev, capacity, -1);
+        sn = grow(sn, capacity, DistUtil.INF);
+        inNext = grow(inNext, capacity, -1);
+        inPrev = grow(inPrev, capacity, -1);
+        pend = grow(pend, capacity, 0);
+        stale = grow(stale, capacity, 0);
+    }
+
+    private static int[] grow(int[] a, int capacity, int v) {
+        int old = a == null ? 0 : a.length;
+        int[] na = a == null ? new int[capacity] : Arrays.copyOf(a, capacity);
+        Arrays.fill(na, old, capacity, v);
+        return na;
+    }
+
+    private int findOut(int k, int t) {
+        for (int e = outStart[k]; e < outStart[k + 1]; e++)
+            if (outTo[e] == t)
+                return e;
+        for (int e = extra[k]; e >= 0; e = next[e])
+            if (outTo[e] == t)
+                return e;
+        return -1;
+    }
+
+    // new outgoing link from k to t, it is INF until it comes up
+    private int addLink(int k, int t) {
+        if (m == outFrom.length)
+            allocate(2 * m);
+        int e = m++;
+        next[e] = extra[k];
+        extra[k] = e;
+        outFrom[e] = k;
+        outTo[e] = t;
+        rev[e] = findOut(t, k);
+        if (rev[e] >= 0)
+            rev[rev[e]] = e;
+        return e;
+    }
+
+    // link comes up -- it becomes the last incoming link of the node it goes to
+    private void append(int e) {
+        int t = outTo[e];
+        inPrev[e] = inLast[t];
+        inNext[e] = -1;
+        if (inLast[t] >= 0)
+            inNext[inLast[t]] = e;
+        else
+            inFirst[t] = e;
+        inLast[t] = e;
+    }
+
+    // link goes down -- pending messages over it are dropped
+    private void down(int e) {
+        if (e < 0 || outD[e] == DistUtil.INF)
+            return;
+        outD[e] = DistUtil.INF;
+        dn[e] = DistUtil.INF;
+        sn[e] = DistUtil.INF;
+        stale[e] = pend[e];
+        int t = outTo[e];
+        if (inPrev[e] >= 0)
+            inNext[inPrev[e]] = inNext[e];
+        else
+            inFirst[t] = inNext[e];
+        if (inNext[e] >= 0)
+            inPrev[inNext[e]] = inPrev[e];
+        else
+            inLast[t] = inPrev[e];
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    public boolean isQuiescent() {
+        return head == tail;
+    }
+
+    public int getDist(NID i) {
+        int k = Arrays.binarySearch(ids, i);
+        return k < 0 ? DistUtil.INF : bestDist(k);
+    }
+
+    // all links come up at once, in the same way as in a committed batch of link updates
+    public void start() {
+        for (int k = 0; k < ids.length; k++) {
+            rd[k] = bestDist(k);
+            for (int e = inFirst[k]; e >= 0; e = inNext[e]) {
+                int d = reportedDist(e, rd[k]);
+                if (d != DistUtil.INF)
+                    advertise(e, d);
+            }
+        }
+    }
+
+    // adds link or changes its distance in the same way as NetworkModel.updateLink, the set of nodes is fixed
+    public void updateLink(NID from, NID to, int d) {
+        if (d == DistUtil.INF) {
+            removeLink(from, to);
+            return;
+        }
+        int k = Arrays.binarySearch(ids, from);
+        int t = Arrays.binarySearch(ids, to);
+        if (k < 0 || t < 0)
+            throw new IllegalArgumentException("Unknown node in link " + from + "->" + to);
+        int e = findOut(k, t);
+        if (e < 0)
+            e = addLink(k, t);
+        boolean added = outD[e] == DistUtil.INF;
+        outD[e] = d;
+        updates(k);
+        if (!added)
+            return;
+        append(e);
+        int rt = reportedDist(e, rd[t]);
+        if (rt != DistUtil.INF)
+            advertise(e, rt);
+    }
+
+    // removes link in both directions, pending messages over it are dropped
+    public void removeLink(NID a, NID b) {
+        int ka = Arrays.binarySearch(ids, a);
+        int kb = Arrays.binarySearch(ids, b);
+        if (ka < 0 || kb < 0)
+            return; // there is no such link
+        down(findOut(ka, kb));
+        down(findOut(kb, ka));
+        updates(ka);
+        updates(kb);
+    }
+
+    // processes one pending message, returns false when there are none
+    public boolean processNext() {
+        while (head != tail) {
+            int e = ring[head];
+            int d = ring[head + 1];
+            head = (head + 2) & (ring.length - 1);
+            pend[e]--;
+            if (stale[e] > 0) {
+                stale[e]--;
+                continue; // link was removed after the message was sent
+            }
+            processedCount++;
+            dn[e] = d;
+            updates(outFrom[e]);
+            return true;
+        }
+        return false;
+    }
+
+    public void processAll() {
+        while (processNext()) {
+            // loop
+        }
+    }
+
+    private int bestDist(int k) {
+        if (k == dest)
+            return 0;
+        int best = DistUtil.INF;
+        for (int e = outStart[k]; e < outStart[k + 1]; e++)
+            best = Math.min(best, DistUtil.sumDist(dn[e], outD[e]));
+        for (int e = extra[k]; e >= 0; e = next[e])
+            best = Math.min(best, DistUtil.sumDist(dn[e], outD[e]));
+        return best > DFBNode.MAX_DIST ? DistUtil.INF : best;
+    }
+
+    // distance that the node link e goes to shall report back over it
+    private int reportedDist(int e, int best) {
+        if (mode.poison && best != DistUtil.INF) {
+            int r = rev[e];
+            if (r >= 0 && best == DistUtil.sumDist(dn[r], outD[r]))
+                return DistUtil.INF; // we route via this neighbour
+        }
+        return best;
+    }
+
+    private void updates(int k) {
+        int best = bestDist(k);
+        rd[k] = best;
+        boolean changed = false;
+        for (int e = inFirst[k]; e >= 0; e = inNext[e])
+            if (reportedDist(e, best) != sn[e]) {
+                changed = true;
+                break;
+            }
+        if (!changed)
+            return;
+        for (int e = inFirst[k]; e >= 0; e = inNext[e]) {
+            int d = reportedDist(e, best);
+            if (mode.full || d != sn[e])
+                advertise(e, d);
+        }
+    }
+
+    private void advertise(int e, int d) {
+        sn[e] = d;
+        sentCount++;
+        pend[e]++;
+        ring[tail] = e;
+        ring[tail + 1] = d;
+        tail = (tail + 2) & (ring.length - 1);
+        if (tail == head)
+            grow();
+    }
+
+    private void grow() {
+        int[] nr = new int[ring.length * 2];
+        int h = ring.length - head;
+        System.arraycopy(ring, head, nr, 0, h);
+        System.arraycopy(ring, 0, nr, h, head);
+        head = 0;
+        tail = ring.length;
+        ring = nr;
+    }
+}
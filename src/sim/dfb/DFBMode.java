@@ -0,0 +1,25 @@
+package sim.dfb;
+
+/**
+ * Distributed Ford-Bellman algorithm: mode of sending updates to neighbours.
+ *
+ * @author Roman Elizarov
+ */
+public enum DFBMode {
+    PLAIN(false, true, false, "Updates with best distance are sent to all neighbours"),
+    SH(true, false, false, "Split horizon: neighbours we route via get INF, sent only when changed"),
+    PR(true, true, false, "Poison reverse: neighbours we route via get INF in every update"),
+    HD(true, true, true, "Poison reverse with hold-down: INF is sent when distance gets worse until timer expires");
+
+    final boolean poison; // send INF to neighbours we route via
+    final boolean full; // when anything changes send updates to all neighbours (not just to changed ones)
+    final boolean holdDown; // advertise INF when distance gets worse until hold-down timer expires
+    final String description;
+
+    DFBMode(boolean poison, boolean full, boolean holdDown, String description) {
+        this.poison = poison;
+        this.full = full;
+        this.holdDown = holdDown;
+        this.description = description;
+    }
+}
@@ -10,15 +10,34 @@ import sim.DistUtil;
  * @author Roman Elizarov
  */
 public class DFBMsg extends AbstractMsg {
+    final DFBMsgType et; // message type
     final int d; // distance
+    final NID k; // neighbour for MRAI timer
+    final int seq; // sequence number of MRAI timer
 
     public DFBMsg(NID from, NID to, int d) {
         super(from, to);
+        this.et = DFBMsgType.UPDATE;
         this.d = d;
+        this.k = null;
+        this.seq = 0;
+    }
+
+    // timer message at node i
+    public DFBMsg(DFBMsgType et, NID i, NID k, int seq, int delay) {
+        super(i, i, delay);
+        this.et = et;
+        this.d = DistUtil.INF;
+        this.k = k;
+        this.seq = seq;
     }
 
     @Override
     public String getDescription() {
-        return "UPDATE d=" + DistUtil.d2s(d);
+        switch (et) {
+            case UPDATE: return "UPDATE d=" + DistUtil.d2s(d);
+            case MRAI: return "MRAI k=" + k + " seq=" + seq;
+            default: return et.toString();
+        }
     }
 }
@@ -0,0 +1,12 @@
+package sim.dfb;
+
+/**
+ * Distributed Ford-Bellman algorithm: message type.
+ *
+ * @author Roman Elizarov
+ */
+public enum DFBMsgType {
+    UPDATE,
+    HOLD_DOWN, // hold-down timer expiration, node sends it to itself
+    MRAI; // minimal route advertisement interval timer expiration for neighbour, node sends it to itself
+}
@@ -1,6 +1,7 @@
 package sim.dfb;
 
 import sim.AbstractNode;
+import sim.MsgSink;
 import sim.NID;
 import sim.DistUtil;
 
@@ -13,14 +14,30 @@ import java.util.*;
  */
 public class DFBNode extends AbstractNode<DFBMsg> {
     public static final int MAX_DIST = 2000; // truncate to INF over this dist
+    public static final int HOLD_DOWN_TIME = 20; // hold-down timer in virtual time
+
+    private final DFBMode mode;
+    private final int mrai; // minimal route advertisement interval in virtual time, 0 when updates are sent immediately
 
     // --- algorithm state ---
 
     private Map<NID,Integer> dn = new HashMap<>(); // distance as reported by each neighbour (subset of ln nodes)
-    private int rd; // last reported distance to neighbours
+    private Map<NID,Integer> sn = new HashMap<>(); // distance last sent to each neighbour (subset of in nodes)
+    private Map<NID,Integer> cn = new HashMap<>(); // distance last computed for each neighbour (subset of in nodes)
+    private int rd; // last computed distance
+    private int hd = DistUtil.INF; // distance before hold-down, INF when not holding down
+    private boolean timer; // hold-down timer message is pending
+    private Map<NID,Integer> mt = new HashMap<>(); // sequence number of running MRAI timer for each neighbour (subset of in nodes)
+    private int mseq; // sequence number of the last MRAI timer
 
     public DFBNode(NID i) {
+        this(i, DFBMode.PLAIN, 0);
+    }
+
+    public DFBNode(NID i, DFBMode mode, int mrai) {
         super(i);
+        this.mode = mode;
+        this.mrai = mrai;
         rd = i.equals(NID.DEST) ? 0 : DistUtil.INF;
     }
 
@@ -29,48 +46,158 @@ public class DFBNode extends AbstractNode<DFBMsg> {
         return best > MAX_DIST ? DistUtil.INF : best;
     }
 
+    // distance that shall be reported to neighbour j
+    private int reportedDist(NID j, int best) {
+        if (hd != DistUtil.INF)
+            return DistUtil.INF; // holding down
+        if (mode.poison && best != DistUtil.INF && best == distViaMap(j, dn))
+            return DistUtil.INF; // we route via j
+        return best;
+    }
+
     @Override
-    public List<DFBMsg> process(DFBMsg msg) {
+    public void process(DFBMsg msg, MsgSink<DFBMsg> sink) {
         assert msg.to.equals(i);
-        return process(msg.from, msg.d);
+        switch (msg.et) {
+            case HOLD_DOWN:
+                timer = false;
+                hd = DistUtil.INF;
+                updates(sink);
+                break;
+            case MRAI:
+                advertisementTimer(msg.k, msg.seq, sink);
+                break;
+            default:
+                process(msg.from, msg.d, sink);
+        }
     }
 
-    public List<DFBMsg> process(NID from, int d) {
+    public void process(NID from, int d, MsgSink<DFBMsg> sink) {
         DistUtil.put(dn, from, d);
-        return updates();
+        updates(sink);
     }
 
-    public List<DFBMsg> updates() {
+    public void updates(MsgSink<DFBMsg> sink) {
         int best = bestDist();
-        if (best == rd)
-            return Collections.emptyList();
-        List<DFBMsg> send = new ArrayList<>();
-        for (NID j : in)
-            send.add(new DFBMsg(i, j, best));
+        if (mode.holdDown) {
+            if (hd == DistUtil.INF && rd != DistUtil.INF && best > rd) {
+                hd = rd; // distance got worse -- start hold-down
+                if (!timer) {
+                    timer = true;
+                    sink.send(new DFBMsg(DFBMsgType.HOLD_DOWN, i, null, 0, HOLD_DOWN_TIME));
+                }
+            } else if (best <= hd)
+                hd = DistUtil.INF; // distance recovered -- stop hold-down
+        }
         rd = best;
-        return send;
+        // compare with the last computed distances, the last sent ones lag behind while MRAI holds updates
+        boolean changed = false;
+        for (NID j : in) {
+            int d = reportedDist(j, best);
+            if (d != DistUtil.get(cn, j)) {
+                DistUtil.put(cn, j, d);
+                changed = true;
+            }
+        }
+        if (!changed)
+            return;
+        for (NID j : in) {
+            int d = reportedDist(j, best);
+            if (mode.full || d != DistUtil.get(sn, j))
+                advertise(j, d, sink);
+        }
+    }
+
+    // MRAI timer for neighbour k expired -- send it the latest distance if it had changed since last sent
+    private void advertisementTimer(NID k, int seq, MsgSink<DFBMsg> sink) {
+        if (!mt.remove(k, seq))
+            return; // link was removed while timer was running (and maybe added again with a new timer)
+        int d = reportedDist(k, rd);
+        if (d != DistUtil.get(sn, k))
+            advertise(k, d, sink);
+    }
+
+    private void advertise(NID j, int d, MsgSink<DFBMsg> sink) {
+        if (mrai > 0) {
+            if (mt.containsKey(j))
+                return; // hold until MRAI timer expires, the latest distance will be sent then
+            mt.put(j, ++mseq);
+            sink.send(new DFBMsg(DFBMsgType.MRAI, i, j, mseq, mrai));
+        }
+        sink.send(new DFBMsg(i, j, d));
+        DistUtil.put(sn, j, d);
     }
 
     @Override
-    public List<DFBMsg> updateOutgoingLink(NID m, int d) {
+    public void updateOutgoingLink(NID m, int d, MsgSink<DFBMsg> sink) {
         DistUtil.put(ln, m, d);
-        return updates();
+        updates(sink);
     }
 
     @Override
-    public List<DFBMsg> updateIncomingLink(NID m) {
-        if (in.add(m) && rd != DistUtil.INF)
-            return Collections.singletonList(new DFBMsg(i, m, rd));
-        else
-            return Collections.emptyList();
+    public void updateIncomingLink(NID m, MsgSink<DFBMsg> sink) {
+        if (!in.add(m))
+            return;
+        int d = reportedDist(m, rd);
+        DistUtil.put(cn, m, d);
+        if (d != DistUtil.INF)
+            advertise(m, d, sink);
     }
 
     @Override
-    public List<DFBMsg> removeLink(NID m) {
+    public void removeLink(NID m, MsgSink<DFBMsg> sink) {
+        forgetLink(m);
+        updates(sink);
+    }
+
+    private void forgetLink(NID m) {
         ln.remove(m);
         in.remove(m);
         dn.remove(m);
-        return updates();
+        sn.remove(m);
+        cn.remove(m);
+        mt.remove(m);
+    }
+
+    @Override
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<DFBMsg> sink) {
+        removed.forEach(this::forgetLink);
+        outgoing.forEach((m, d) -> DistUtil.put(ln, m, d));
+        updates(sink);
+        for (NID m : incoming)
+            updateIncomingLink(m, sink);
+    }
+
+    @Override
+    public boolean initConverged(Map<NID, Integer> dist, Map<NID, Map<NID, Integer>> links) {
+        int di = trueDist(dist, i);
+        for (NID k : ln.keySet()) {
+            int dk = trueDist(dist, k);
+            if (mode.poison && dk != DistUtil.INF && dk == DistUtil.sumDist(DistUtil.get(links, k, i), di))
+                dk = DistUtil.INF; // k routes via us and poisons its distance
+            DistUtil.put(dn, k, dk);
+        }
+        rd = bestDist();
+        for (NID j : in) {
+            DistUtil.put(sn, j, reportedDist(j, rd));
+            DistUtil.put(cn, j, reportedDist(j, rd));
+        }
+        return true;
+    }
+
+    private static int trueDist(Map<NID, Integer> dist, NID k) {
+        int d = DistUtil.get(dist, k);
+        return d > MAX_DIST ? DistUtil.INF : d;
+    }
+
+    @Override
+    public DFBNode copy() {
+        DFBNode node = (DFBNode) super.copy();
+        node.dn = new HashMap<>(dn);
+        node.sn = new HashMap<>(sn);
+        node.cn = new HashMap<>(cn);
+        node.mt = new HashMap<>(mt);
+        return node;
     }
 
     @Override
@@ -84,12 +211,13 @@ public class DFBNode extends AbstractNode<DFBMsg> {
         return "Node " + i +
                 ": d=" + DistUtil.d2s(bestDist()) +
                 " dn=" + dn +
-                " ln=" + ln;
+                " ln=" + ln +
+                (hd != DistUtil.INF ? " hd=" + hd : "");
     }
 
     @Override
     public void addNodeDataTo(List<String> nodeStr) {
-        nodeStr.add(i + "");
+        nodeStr.add(i + (hd != DistUtil.INF ? " HOLD" : ""));
         nodeStr.add("d=" + DistUtil.d2s(bestDist()));
         nodeStr.add("dn=" + dn);
     }
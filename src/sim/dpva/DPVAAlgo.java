@@ -2,7 +2,9 @@ package sim.dpva;
 
 import sim.AbstractAlgo;
 import sim.NID;
+import sim.dfb.DFBAlgo;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -12,16 +14,38 @@ import java.util.List;
  * @author Roman Elizarov
  */
 public class DPVAAlgo extends AbstractAlgo<DPVAMsg, DPVANode> {
+    private final int mrai;
+
+    public DPVAAlgo() {
+        this(0);
+    }
+
+    /**
+     * The only option is "MRAI=n" for minimal route advertisement interval.
+     */
+    public DPVAAlgo(String option) {
+        if (!option.startsWith(DFBAlgo.MRAI_OPTION))
+            throw new IllegalArgumentException("Unknown option " + option);
+        this.mrai = Integer.parseInt(option.substring(DFBAlgo.MRAI_OPTION.length()));
+    }
+
+    public DPVAAlgo(int mrai) {
+        this.mrai = mrai;
+    }
+
     @Override
     public List<String> getAlgoDescription() {
-        return Arrays.asList(
+        List<String> list = new ArrayList<>(Arrays.asList(
             "Distance + Path Vector Algorithm",
             "DFB distance + set of intermediate nodes"
-        );
+        ));
+        if (mrai > 0)
+            list.add("Updates to each neighbour are sent at most once per " + mrai + " time units");
+        return list;
     }
 
     @Override
     public DPVANode newNode(NID i) {
-        return new DPVANode(i);
+        return new DPVANode(i, mrai);
     }
 }
@@ -4,6 +4,7 @@ import sim.AbstractMsg;
 import sim.DistUtil;
 import sim.NID;
 
+import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -14,15 +15,28 @@ import java.util.Set;
 public class DPVAMsg extends AbstractMsg {
     final int d; // distance
     final Set<NID> r; // route set -- intermediate nodes on a path
+    final NID k; // neighbour for MRAI timer
+    final int seq; // sequence number of MRAI timer
 
     public DPVAMsg(NID from, NID to, int d, Set<NID> r) {
         super(from, to);
         this.d = d;
         this.r = r;
+        this.k = null;
+        this.seq = 0;
+    }
+
+    // MRAI timer message at node i for neighbour k
+    public DPVAMsg(NID i, NID k, int seq, int delay) {
+        super(i, i, delay);
+        this.d = DistUtil.INF;
+        this.r = Collections.emptySet();
+        this.k = k;
+        this.seq = seq;
     }
 
     @Override
     public String getDescription() {
-        return "UPDATE d=" + DistUtil.d2s(d) + " r=" + r;
+        return isLocal() ? "MRAI k=" + k + " seq=" + seq : "UPDATE d=" + DistUtil.d2s(d) + " r=" + r;
     }
 }
@@ -2,6 +2,7 @@ package sim.dpva;
 
 import sim.AbstractNode;
 import sim.DistUtil;
+import sim.MsgSink;
 import sim.NID;
 import sim.dfb.DFBMsg;
 
@@ -15,6 +16,8 @@ import java.util.*;
 public class DPVANode extends AbstractNode<DPVAMsg> {
     public static final int MAX_DIST = 2000; // truncate to INF over this dist
 
+    private final int mrai; // minimal route advertisement interval in virtual time, 0 when updates are sent immediately
+
     // --- algorithm state ---
 
     private Map<NID,Integer> dn = new HashMap<>(); // distance as reported by each neighbour (subset of ln nodes)
@@ -24,8 +27,17 @@ public class DPVANode extends AbstractNode<DPVAMsg> {
     private int rd;       // last reported distance to neighbours
     private Set<NID> rr;  // last reported route set to neighbours
 
+    private Map<NID,Integer> mt = new HashMap<>(); // sequence number of running MRAI timer for each neighbour (subset of in nodes)
+    private int mseq; // sequence number of the last MRAI timer
+    private Set<NID> mp = new HashSet<>(); // neighbours with pending update until MRAI timer expires (subset of mt)
+
     public DPVANode(NID i) {
+        this(i, 0);
+    }
+
+    public DPVANode(NID i, int mrai) {
         super(i);
+        this.mrai = mrai;
         rd = i.equals(NID.DEST) ? 0 : DistUtil.INF;
         rr = Collections.emptySet(); // initially empty
     }
@@ -53,70 +65,124 @@ public class DPVANode extends AbstractNode<DPVAMsg> {
     }
 
     @Override
-    public List<DPVAMsg> process(DPVAMsg msg) {
+    public void process(DPVAMsg msg, MsgSink<DPVAMsg> sink) {
         assert msg.to.equals(i);
-        return process(msg.from, msg.d, msg.r);
+        if (msg.isLocal())
+            advertisementTimer(msg.k, msg.seq, sink);
+        else
+            process(msg.from, msg.d, msg.r, sink);
     }
 
-    public List<DPVAMsg> process(NID from, int d, Set<NID> r) {
+    public void process(NID from, int d, Set<NID> r, MsgSink<DPVAMsg> sink) {
         DistUtil.put(dn, from, d);
         if (r.isEmpty())
             rn.remove(from);
         else
             rn.put(from, r);
-        return updates();
+        updates(sink);
     }
 
-    public List<DPVAMsg> updates() {
+    public void updates(MsgSink<DPVAMsg> sink) {
         int best = bestDist();
         Set<NID> bestRoute = bestRoute(best);
         if (best == rd && bestRoute.equals(rr))
-            return Collections.emptyList(); // nothing changes -- don't send any updates
-        List<DPVAMsg> send = new ArrayList<>();
+            return; // nothing changes -- don't send any updates
+        rd = best;
+        rr = bestRoute;
         for (NID j : in) {
             if (j.equals(NID.DEST))
                 continue; // never need to send updates to the destination node
-            // loop detection
-            if (bestRoute.contains(j) || best == DistUtil.INF) {
-                // loop detected or best route is INF.
-                // Now send INF to neighbour only if previously sent non-INF to this node before
-                if (rs.remove(j))
-                    send.add(new DPVAMsg(i, j, DistUtil.INF, Collections.emptySet()));
-            } else {
-                // ok path to destination
-                rs.add(j); // remember that we had sent non-INF path to this neighbour
-                send.add(new DPVAMsg(i, j, best, bestRoute));
-            }
+            advertise(j, sink);
         }
-        rd = best;
-        rr = bestRoute;
-        return send;
+    }
+
+    // sends last reported (rd,rr) pair to neighbour j
+    private void advertise(NID j, MsgSink<DPVAMsg> sink) {
+        if (mt.containsKey(j)) {
+            mp.add(j); // hold until MRAI timer expires, the latest pair will be sent then
+            return;
+        }
+        // loop detection
+        if (rr.contains(j) || rd == DistUtil.INF) {
+            // loop detected or best route is INF.
+            // Now send INF to neighbour only if previously sent non-INF to this node before
+            if (!rs.remove(j))
+                return;
+            sink.send(new DPVAMsg(i, j, DistUtil.INF, Collections.emptySet()));
+        } else {
+            // ok path to destination
+            rs.add(j); // remember that we had sent non-INF path to this neighbour
+            sink.send(new DPVAMsg(i, j, rd, rr));
+        }
+        startTimer(j, sink);
+    }
+
+    private void startTimer(NID j, MsgSink<DPVAMsg> sink) {
+        if (mrai > 0) {
+            mt.put(j, ++mseq);
+            sink.send(new DPVAMsg(i, j, mseq, mrai));
+        }
+    }
+
+    // MRAI timer for neighbour k expired -- send it pending update if any
+    private void advertisementTimer(NID k, int seq, MsgSink<DPVAMsg> sink) {
+        if (!mt.remove(k, seq) || !mp.remove(k))
+            return; // link was removed (and maybe added again with a new timer) or nothing to send
+        advertise(k, sink);
     }
 
     @Override
-    public List<DPVAMsg> updateOutgoingLink(NID m, int d) {
+    public void updateOutgoingLink(NID m, int d, MsgSink<DPVAMsg> sink) {
         DistUtil.put(ln, m, d);
-        return updates();
+        updates(sink);
     }
 
     @Override
-    public List<DPVAMsg> updateIncomingLink(NID m) {
+    public void updateIncomingLink(NID m, MsgSink<DPVAMsg> sink) {
         // send updates on the incoming link if our known distance is non-INF
         if (in.add(m) && rd != DistUtil.INF) {
             rs.add(m);
-            return Collections.singletonList(new DPVAMsg(i, m, rd, rr));
-        } else
-            return Collections.emptyList();
+            sink.send(new DPVAMsg(i, m, rd, rr));
+            startTimer(m, sink);
+        }
     }
 
     @Override
-    public List<DPVAMsg> removeLink(NID m) {
+    public void removeLink(NID m, MsgSink<DPVAMsg> sink) {
+        forgetLink(m);
+        updates(sink);
+    }
+
+    private void forgetLink(NID m) {
         ln.remove(m);
         in.remove(m);
         dn.remove(m);
         rn.remove(m);
         rs.remove(m);
-        return updates();
+        mt.remove(m);
+        mp.remove(m);
+    }
+
+    // best route is recomputed and updates are sent once for all changes
+    @Override
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<DPVAMsg> sink) {
+        removed.forEach(this::forgetLink);
+        outgoing.forEach((m, d) -> DistUtil.put(ln, m, d));
+        if (!removed.isEmpty() || !outgoing.isEmpty())
+            updates(sink);
+        for (NID m : incoming)
+            updateIncomingLink(m, sink);
+    }
+
+    @Override
+    public DPVANode copy() {
+        DPVANode node = (DPVANode) super.copy();
+        node.dn = new HashMap<>(dn);
+        node.rn = new HashMap<>(rn);
+        node.rs = new HashSet<>(rs);
+        node.mt = new HashMap<>(mt);
+        node.mp = new HashSet<>(mp);
+        return node;
     }
 
     @Override
@@ -0,0 +1,48 @@
+package sim.hls;
+
+import sim.AbstractAlgo;
+import sim.NID;
+import sim.ls.LSUpdateMsg;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical link-state algorithm: factory class.
+ * Takes area size as an option like "HLS:5".
+ *
+ * @author Roman Elizarov
+ */
+public class HLSAlgo extends AbstractAlgo<LSUpdateMsg, HLSNode> {
+    public static final int DEFAULT_AREA_SIZE = 5;
+
+    private final int areaSize;
+
+    public HLSAlgo() {
+        this(DEFAULT_AREA_SIZE);
+    }
+
+    public HLSAlgo(String option) {
+        this(Integer.parseInt(option));
+    }
+
+    public HLSAlgo(int areaSize) {
+        if (areaSize <= 0)
+            throw new IllegalArgumentException("Area size must be positive: " + areaSize);
+        this.areaSize = areaSize;
+    }
+
+    @Override
+    public List<String> getAlgoDescription() {
+        return Arrays.asList(
+            "HLS: Hierarchical Link-State Algorithm",
+            "Link-state within areas of " + areaSize + " nodes, distance vector between areas",
+            "Count-to-infinity between areas is avoided by limiting distance to " + HLSNode.MAX_DIST
+        );
+    }
+
+    @Override
+    public HLSNode newNode(NID i) {
+        return new HLSNode(i, areaSize);
+    }
+}
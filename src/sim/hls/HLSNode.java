@@ -0,0 +1,205 @@
+package sim.hls;
+
+import sim.DistUtil;
+import sim.MsgSink;
+import sim.NID;
+import sim.ls.LSNode;
+import sim.ls.LSUpdateMsg;
+
+import java.util.*;
+
+/**
+ * Hierarchical link-state algorithm: logic at the node.
+ *
+ * <p>Nodes are grouped into areas by their numeric names (node n is in area n / areaSize, nodes with
+ * non-numeric names are in a separate area of their own). LSAs are flooded only within the area and contain only
+ * intra-area links, so link state database and flooding are bounded by the size of the area.
+ *
+ * <p>Between areas nodes exchange only their distances to destination, like in distance vector algorithm.
+ * Border node summarizes them into a virtual link to destination in its LSA with the distance of the best exit
+ * from the area, so that all nodes in the area find the best path to destination with SPF. Border node does not
+ * report its distance back to the neighbour that is its next hop (poison reverse).
+ *
+ * @author Roman Elizarov
+ */
+public class HLSNode extends LSNode {
+    public static final int MAX_DIST = 2000; // truncate to INF over this dist
+
+    private final int areaSize;
+    private final int area;
+
+    // --- algorithm state ---
+
+    private Map<NID, Integer> dn = new HashMap<>(); // distance as reported by neighbours in other areas
+    private Map<NID, Integer> sn = new HashMap<>(); // distance last reported to each in-neighbour in other area
+
+    public HLSNode(NID i, int areaSize) {
+        super(i);
+        this.areaSize = areaSize;
+        area = area(i);
+    }
+
+    private int area(NID j) {
+        try {
+            return Integer.parseInt(j.toString()) / areaSize;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean isSameArea(NID j) {
+        return area(j) == area;
+    }
+
+    // distance of the best exit from the area via links to neighbours in other areas
+    private int exitDist() {
+        return bestDistOverSetViaMap(exits(), dn);
+    }
+
+    private Set<NID> exits() {
+        Set<NID> exits = new HashSet<>();
+        for (NID k : ln.keySet())
+            if (!isSameArea(k))
+                exits.add(k);
+        return exits;
+    }
+
+    @Override
+    protected Map<NID, Integer> advertisedLinks() {
+        Map<NID, Integer> links = new HashMap<>();
+        ln.forEach((k, d) -> {
+            if (isSameArea(k))
+                links.put(k, d);
+        });
+        if (!i.equals(NID.DEST)) {
+            // virtual link to destination via the best exit
+            int d = Math.min(exitDist(), DistUtil.get(links, NID.DEST));
+            if (d <= MAX_DIST)
+                links.put(NID.DEST, d);
+        }
+        return links;
+    }
+
+    @Override
+    protected boolean isFloodedTo(NID j) {
+        return isSameArea(j);
+    }
+
+    @Override
+    protected int bestDist() {
+        int best = super.bestDist();
+        return best > MAX_DIST ? DistUtil.INF : best;
+    }
+
+    @Override
+    public void process(LSUpdateMsg msg, MsgSink<LSUpdateMsg> sink) {
+        if (!(msg instanceof HLSSummaryMsg))
+            super.process(msg, sink);
+        else {
+            assert msg.to.equals(i);
+            if (ln.containsKey(msg.from)) // only remember reported distances if there is an outgoing link
+                DistUtil.put(dn, msg.from, ((HLSSummaryMsg) msg).d);
+        }
+        changed(sink);
+    }
+
+    // originates new LSA when advertised links change and reports distance to other areas when it changes
+    private void changed(MsgSink<LSUpdateMsg> sink) {
+        if (!advertisedLinks().equals(originatedLinks()))
+            floodOwn(sink);
+        int best = bestDist();
+        NID h = nextHop();
+        for (NID j : in)
+            if (!isSameArea(j))
+                report(j, j.equals(h) ? DistUtil.INF : best, sink);
+    }
+
+    private void report(NID j, int d, MsgSink<LSUpdateMsg> sink) {
+        if (d == DistUtil.get(sn, j))
+            return;
+        DistUtil.put(sn, j, d);
+        sink.send(new HLSSummaryMsg(i, j, d));
+    }
+
+    @Override
+    public void updateOutgoingLink(NID m, int d, MsgSink<LSUpdateMsg> sink) {
+        DistUtil.put(ln, m, d);
+        changed(sink);
+    }
+
+    @Override
+    public void updateIncomingLink(NID m, MsgSink<LSUpdateMsg> sink) {
+        super.updateIncomingLink(m, sink);
+        if (!isSameArea(m))
+            changed(sink);
+    }
+
+    @Override
+    public void removeLink(NID m, MsgSink<LSUpdateMsg> sink) {
+        forgetLink(m);
+        changed(sink);
+    }
+
+    private void forgetLink(NID m) {
+        in.remove(m);
+        ln.remove(m);
+        dn.remove(m);
+        sn.remove(m);
+    }
+
+    @Override
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<LSUpdateMsg> sink) {
+        removed.forEach(this::forgetLink);
+        outgoing.forEach((m, d) -> DistUtil.put(ln, m, d));
+        for (NID m : incoming)
+            super.updateIncomingLink(m, sink);
+        changed(sink);
+    }
+
+    @Override
+    public boolean initConverged(Map<NID, Integer> dist, Map<NID, Map<NID, Integer>> links) {
+        return false; // LSAs depend on distances that are reported by other areas
+    }
+
+    @Override
+    public HLSNode copy() {
+        HLSNode node = (HLSNode) super.copy();
+        node.dn = new HashMap<>(dn);
+        node.sn = new HashMap<>(sn);
+        return node;
+    }
+
+    // next hop to destination, virtual link to destination is resolved to the best exit from the area
+    private NID nextHop() {
+        if (bestDist() == DistUtil.INF)
+            return null;
+        NID h = firstHop(NID.DEST);
+        if (!NID.DEST.equals(h))
+            return h;
+        int best = isSameArea(NID.DEST) ? DistUtil.get(ln, NID.DEST) : DistUtil.INF;
+        for (NID k : exits()) {
+            int d = distViaMap(k, dn);
+            if (d < best) {
+                best = d;
+                h = k;
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public int getLinkFlags(NID m) {
+        return m.equals(nextHop()) ? LINK_ROUTE + LINK_BOLD : 0;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " area=" + area + " dn=" + dn + " sn=" + sn;
+    }
+
+    @Override
+    public void addNodeDataTo(List<String> nodeStr) {
+        super.addNodeDataTo(nodeStr);
+        nodeStr.add("area=" + area + " dn=" + dn + " sn=" + sn);
+    }
+}
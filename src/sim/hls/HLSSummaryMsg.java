@@ -0,0 +1,26 @@
+package sim.hls;
+
+import sim.DistUtil;
+import sim.NID;
+import sim.ls.LSUpdateMsg;
+
+import java.util.Collections;
+
+/**
+ * Hierarchical link-state algorithm: distance to destination that is sent to neighbours in other areas.
+ *
+ * @author Roman Elizarov
+ */
+public class HLSSummaryMsg extends LSUpdateMsg {
+    final int d; // distance to destination
+
+    public HLSSummaryMsg(NID from, NID to, int d) {
+        super(from, to, Collections.emptyList());
+        this.d = d;
+    }
+
+    @Override
+    public String getDescription() {
+        return "SUMMARY d=" + DistUtil.d2s(d);
+    }
+}
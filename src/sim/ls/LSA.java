@@ -0,0 +1,29 @@
+package sim.ls;
+
+import sim.NID;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Link-state algorithm: link state advertisement with outgoing links of its origin node.
+ *
+ * @author Roman Elizarov
+ */
+public class LSA {
+    final NID origin;
+    final int seq; // sequence number, the LSA with greater one is newer
+    final Map<NID, Integer> links; // outgoing links of origin node
+
+    public LSA(NID origin, int seq, Map<NID, Integer> links) {
+        this.origin = origin;
+        this.seq = seq;
+        this.links = Collections.unmodifiableMap(new TreeMap<>(links));
+    }
+
+    @Override
+    public String toString() {
+        return origin + "#" + seq + links;
+    }
+}
@@ -0,0 +1,27 @@
+package sim.ls;
+
+import sim.AbstractAlgo;
+import sim.NID;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Link-state algorithm: factory class.
+ *
+ * @author Roman Elizarov
+ */
+public class LSAlgo extends AbstractAlgo<LSUpdateMsg, LSNode> {
+    @Override
+    public List<String> getAlgoDescription() {
+        return Arrays.asList(
+            "LS: Link-State Algorithm",
+            "Sequence-numbered LSA flooding with incremental SPF"
+        );
+    }
+
+    @Override
+    public LSNode newNode(NID i) {
+        return new LSNode(i);
+    }
+}
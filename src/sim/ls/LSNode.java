@@ -0,0 +1,287 @@
+package sim.ls;
+
+import sim.AbstractNode;
+import sim.DistUtil;
+import sim.MsgSink;
+import sim.NID;
+
+import java.util.*;
+
+/**
+ * Link-state algorithm: logic at the node.
+ *
+ * <p>Each node originates LSA with its outgoing links and a new sequence number on every change of them.
+ * LSAs are flooded in reverse link direction (over incoming links), so that each node learns LSAs of all
+ * nodes that are reachable from it. Received LSAs that are not newer than the ones in the database are not
+ * flooded any further. The shortest path tree from the node is updated incrementally on every LSA change.
+ *
+ * @author Roman Elizarov
+ */
+public class LSNode extends AbstractNode<LSUpdateMsg> {
+    // --- algorithm state ---
+
+    private int seq; // sequence number of the last originated LSA
+    private Map<NID, LSA> db = new HashMap<>(); // link state database with the latest LSA from each origin
+    private Map<NID, Map<NID, Integer>> pred = new HashMap<>(); // reverse links from database, pred[w][v] == d(v,w)
+
+    // --- shortest path tree from this node ---
+
+    private Map<NID, Integer> dist = new HashMap<>(); // distance to reachable nodes
+    private Map<NID, NID> parent = new HashMap<>(); // previous node on the shortest path
+    private Map<NID, Set<NID>> children = new HashMap<>(); // reverse of parent
+
+    public LSNode(NID i) {
+        super(i);
+        db.put(i, new LSA(i, seq, ln));
+        dist.put(i, 0);
+    }
+
+    @Override
+    public void process(LSUpdateMsg msg, MsgSink<LSUpdateMsg> sink) {
+        assert msg.to.equals(i);
+        List<LSA> flood = new ArrayList<>(); // newer LSAs to flood further
+        List<LSA> reply = new ArrayList<>(); // our newer LSAs to send back to the sender
+        for (LSA lsa : msg.lsas) {
+            LSA cur = db.get(lsa.origin);
+            if (lsa.origin.equals(i)) {
+                if (lsa.seq > seq || lsa.seq == seq && !lsa.links.equals(cur.links)) {
+                    // our own LSA from the past (we were removed and created again) -- jump over its sequence number
+                    seq = lsa.seq;
+                    flood.add(originate());
+                } else if (lsa.seq < seq)
+                    reply.add(cur);
+            } else if (cur == null || lsa.seq > cur.seq) {
+                install(lsa);
+                flood.add(lsa);
+            } else if (lsa.seq < cur.seq)
+                reply.add(cur); // sender has older LSA
+            // otherwise it is a duplicate -- drop it
+        }
+        if (!flood.isEmpty())
+            for (NID j : in)
+                if (!j.equals(msg.from) && isFloodedTo(j))
+                    sink.send(new LSUpdateMsg(i, j, flood));
+        if (!reply.isEmpty() && in.contains(msg.from) && isFloodedTo(msg.from))
+            sink.send(new LSUpdateMsg(i, msg.from, reply));
+    }
+
+    // links that this node advertises in its LSA
+    protected Map<NID, Integer> advertisedLinks() {
+        return ln;
+    }
+
+    // links in the last LSA that this node had originated
+    protected Map<NID, Integer> originatedLinks() {
+        return db.get(i).links;
+    }
+
+    // true if LSAs are flooded to a given in-neighbour
+    protected boolean isFloodedTo(NID j) {
+        return true;
+    }
+
+    // originate new LSA with our current outgoing links
+    private LSA originate() {
+        LSA lsa = new LSA(i, ++seq, advertisedLinks());
+        install(lsa);
+        return lsa;
+    }
+
+    protected void floodOwn(MsgSink<LSUpdateMsg> sink) {
+        List<LSA> flood = Collections.singletonList(originate());
+        for (NID j : in)
+            if (isFloodedTo(j))
+                sink.send(new LSUpdateMsg(i, j, flood));
+    }
+
+    private void install(LSA lsa) {
+        NID v = lsa.origin;
+        LSA old = db.put(v, lsa);
+        Map<NID, Integer> oldLinks = old == null ? Collections.emptyMap() : old.links;
+        oldLinks.keySet().forEach(w -> pred.get(w).remove(v));
+        lsa.links.forEach((w, d) -> pred.computeIfAbsent(w, $ -> new HashMap<>()).put(v, d));
+        updateSPT(v, oldLinks, lsa.links);
+    }
+
+    // incremental update of the shortest path tree when outgoing links of v change
+    private void updateSPT(NID v, Map<NID, Integer> oldLinks, Map<NID, Integer> newLinks) {
+        Integer dv = dist.get(v);
+        if (dv == null)
+            return; // v is not reachable -- its links do not matter
+        // subtrees that lost their tree link become unreachable until reattached below
+        Set<NID> lost = new HashSet<>();
+        oldLinks.forEach((w, d) -> {
+            if (v.equals(parent.get(w)) && DistUtil.get(newLinks, w) > d)
+                collectSubtree(w, lost);
+        });
+        for (NID u : lost) {
+            setParent(u, null);
+            dist.remove(u);
+        }
+        PriorityQueue<QE> queue = new PriorityQueue<>();
+        // reattach lost nodes via their remaining incoming links
+        for (NID u : lost) {
+            Map<NID, Integer> pu = pred.get(u);
+            if (pu != null)
+                pu.forEach((p, d) -> relax(p, u, d, queue));
+        }
+        // new or shorter links from v
+        newLinks.forEach((w, d) -> relax(v, w, d, queue));
+        // Dijkstra from changed nodes
+        while (!queue.isEmpty()) {
+            QE e = queue.remove();
+            if (e.d != dist.get(e.v))
+                continue; // outdated queue entry
+            LSA lsa = db.get(e.v);
+            if (lsa != null)
+                lsa.links.forEach((w, d) -> relax(e.v, w, d, queue));
+        }
+    }
+
+    private void relax(NID u, NID w, int d, PriorityQueue<QE> queue) {
+        Integer du = dist.get(u);
+        if (du == null)
+            return;
+        int nd = DistUtil.sumDist(du, d);
+        if (nd < DistUtil.get(dist, w)) {
+            dist.put(w, nd);
+            setParent(w, u);
+            queue.add(new QE(w, nd));
+        }
+    }
+
+    private void collectSubtree(NID u, Set<NID> set) {
+        if (!set.add(u))
+            return;
+        Set<NID> cs = children.get(u);
+        if (cs != null)
+            cs.forEach(c -> collectSubtree(c, set));
+    }
+
+    private void setParent(NID u, NID p) {
+        NID old = p == null ? parent.remove(u) : parent.put(u, p);
+        if (old != null)
+            children.get(old).remove(u);
+        if (p != null)
+            children.computeIfAbsent(p, $ -> new HashSet<>()).add(u);
+    }
+
+    protected int bestDist() {
+        return DistUtil.get(dist, NID.DEST);
+    }
+
+    // first hop on the shortest path to a given reachable node
+    protected NID firstHop(NID u) {
+        NID p;
+        while ((p = parent.get(u)) != null && !p.equals(i))
+            u = p;
+        return p == null ? null : u;
+    }
+
+    @Override
+    public void updateOutgoingLink(NID m, int d, MsgSink<LSUpdateMsg> sink) {
+        DistUtil.put(ln, m, d);
+        floodOwn(sink);
+    }
+
+    @Override
+    public void updateIncomingLink(NID m, MsgSink<LSUpdateMsg> sink) {
+        if (in.add(m) && isFloodedTo(m)) // synchronize the whole database with a new neighbour
+            sink.send(new LSUpdateMsg(i, m, new ArrayList<>(db.values())));
+    }
+
+    @Override
+    public void removeLink(NID m, MsgSink<LSUpdateMsg> sink) {
+        in.remove(m);
+        if (ln.remove(m) != null)
+            floodOwn(sink);
+    }
+
+    @Override
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<LSUpdateMsg> sink) {
+        for (NID m : removed) {
+            in.remove(m);
+            ln.remove(m);
+        }
+        outgoing.forEach((m, d) -> DistUtil.put(ln, m, d));
+        if (!advertisedLinks().equals(originatedLinks()))
+            floodOwn(sink);
+        for (NID m : incoming)
+            updateIncomingLink(m, sink);
+    }
+
+    @Override
+    public boolean initConverged(Map<NID, Integer> dist, Map<NID, Map<NID, Integer>> links) {
+        // LSAs of all nodes that are reachable from us with the first sequence number
+        seq = 1;
+        Set<NID> reached = new HashSet<>();
+        Deque<NID> queue = new ArrayDeque<>();
+        reached.add(i);
+        queue.add(i);
+        while (!queue.isEmpty()) {
+            NID v = queue.remove();
+            Map<NID, Integer> vl = links.getOrDefault(v, Collections.emptyMap());
+            install(new LSA(v, seq, vl));
+            for (NID w : vl.keySet())
+                if (reached.add(w))
+                    queue.add(w);
+        }
+        return true;
+    }
+
+    @Override
+    public LSNode copy() {
+        LSNode node = (LSNode) super.copy();
+        node.db = new HashMap<>(db);
+        node.pred = new HashMap<>();
+        pred.forEach((w, map) -> node.pred.put(w, new HashMap<>(map)));
+        node.dist = new HashMap<>(dist);
+        node.parent = new HashMap<>(parent);
+        node.children = new HashMap<>();
+        children.forEach((p, set) -> node.children.put(p, new HashSet<>(set)));
+        return node;
+    }
+
+    @Override
+    public int getLinkFlags(NID m) {
+        return bestDist() != DistUtil.INF && m.equals(firstHop(NID.DEST)) ? LINK_ROUTE + LINK_BOLD : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Node " + i +
+                ": d=" + DistUtil.d2s(bestDist()) +
+                " seq=" + seq +
+                " db=" + new TreeMap<>(db).values();
+    }
+
+    @Override
+    public void addNodeDataTo(List<String> nodeStr) {
+        nodeStr.add(i + "");
+        nodeStr.add("d=" + DistUtil.d2s(bestDist()) + " seq=" + seq);
+        nodeStr.add("db=" + new TreeMap<>(db).values());
+    }
+
+    @Override
+    public String verifyQuiescentDistance(int td) {
+        int best = bestDist();
+        if (best != td)
+            return "Node " + i + " current distance " + DistUtil.d2s(best) + " != " + DistUtil.d2s(td) + " of true distance";
+        return null;
+    }
+
+    private static class QE implements Comparable<QE> {
+        final NID v;
+        final int d;
+
+        QE(NID v, int d) {
+            this.v = v;
+            this.d = d;
+        }
+
+        @Override
+        public int compareTo(QE o) {
+            return Integer.compare(d, o.d);
+        }
+    }
+}
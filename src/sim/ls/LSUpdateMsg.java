@@ -0,0 +1,25 @@
+package sim.ls;
+
+import sim.AbstractMsg;
+import sim.NID;
+
+import java.util.List;
+
+/**
+ * Link-state algorithm: message with a list of link state advertisements.
+ *
+ * @author Roman Elizarov
+ */
+public class LSUpdateMsg extends AbstractMsg {
+    final List<LSA> lsas;
+
+    public LSUpdateMsg(NID from, NID to, List<LSA> lsas) {
+        super(from, to);
+        this.lsas = lsas;
+    }
+
+    @Override
+    public String getDescription() {
+        return "LSU " + lsas;
+    }
+}
@@ -25,4 +25,9 @@ public class MDVAAlgo extends AbstractAlgo<MDVAMsg, MDVANode> {
     public MDVANode newNode(NID i) {
         return new MDVANode(i);
     }
+
+    @Override
+    public boolean isLoopFree() {
+        return true;
+    }
 }
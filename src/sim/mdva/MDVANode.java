@@ -1,6 +1,7 @@
 package sim.mdva;
 
 import sim.AbstractNode;
+import sim.MsgSink;
 import sim.NID;
 import sim.DistUtil;
 
@@ -64,9 +65,9 @@ public class MDVANode extends AbstractNode<MDVAMsg> {
     }
 
     @Override
-    public List<MDVAMsg> process(MDVAMsg msg) {
+    public void process(MDVAMsg msg, MsgSink<MDVAMsg> sink) {
         assert msg.to.equals(i);
-        return process(msg.et, msg.from, msg.d);
+        process(msg.et, msg.from, msg.d, sink);
     }
 
     /**
@@ -75,16 +76,19 @@ public class MDVANode extends AbstractNode<MDVAMsg> {
      * @param et message type.
      * @param m neighbour that had sent the message.
      * @param d distance.
-     * @return the list of messages to send.
+     * @param sink receives messages to send.
      */
-    private List<MDVAMsg> process(MDVAMsgType et, NID m, int d) {
-        // a list of messages to send
-        List<MDVAMsg> send = new ArrayList<>();
+    private void process(MDVAMsgType et, NID m, int d, MsgSink<MDVAMsg> sink) {
         //  variables
         Set<NID> s = successorSet(); // previous successor set -- compute before making updates
         if (ln.keySet().contains(m)) { // only remember reported distances if there is an outgoing link
 /*04*/      DistUtil.put(dn, m, d); // update last reported distance
         }
+        step(et, m, s, sink);
+    }
+
+    // makes a step of the algorithm after distances or links had changed, s is the successor set before the changes
+    private void step(MDVAMsgType et, NID m, Set<NID> s, MsgSink<MDVAMsg> sink) {
 /*05*/  int cd = bestMDVADist(); // current MDVA distance through all outgoing links (D^i_j)
 /*06*/  int sd = bestMDVADist(s); // shortest MDVA distance through successor set (SD^i_j)
         // Note: it is always a case that cd <= sd (since cd is minimum over a larger set)
@@ -111,7 +115,7 @@ public class MDVANode extends AbstractNode<MDVAMsg> {
                 assert fd <= cd && cd <= rd;
                 // now send queries with new (large) reported distance
                 for (NID k : in) {
-/*15*/              send.add(new MDVAMsg(MDVAMsgType.QUERY, getId(), k, rd));
+/*15*/              sink.send(new MDVAMsg(MDVAMsgType.QUERY, getId(), k, rd));
                     r.add(k); // will wait for reply
                 }
             }
@@ -124,7 +128,7 @@ public class MDVANode extends AbstractNode<MDVAMsg> {
 /*08*/          fd = cd; // feasible distance is set to be the same as the computed distance
                 // sending pending replies
                 for (NID k : wn) {
-/*19*/              send.add(new MDVAMsg(MDVAMsgType.REPLY, getId(), k, cd));
+/*19*/              sink.send(new MDVAMsg(MDVAMsgType.REPLY, getId(), k, cd));
                 }
                 // send updates the the rest of neighbour nodes if previously reported different distance
                 for (NID k : in) {
@@ -133,7 +137,7 @@ public class MDVANode extends AbstractNode<MDVAMsg> {
                     // for a different distance
                     if (!wn.contains(k) && (cd != rd)) {
                         /* ERROR IN PAPER: send [UPDATE,j,RD] must be send [UPDATE,j,D] -- must send new distance */
-/*20*/                  send.add(new MDVAMsg(MDVAMsgType.UPDATE, getId(), k, cd));
+/*20*/                  sink.send(new MDVAMsg(MDVAMsgType.UPDATE, getId(), k, cd));
                     }
                 }
 /*23*/          rd = cd; // update reported distance -- all distances are the same the end of ACTIVE phase (cd == fd == rd)
@@ -144,12 +148,11 @@ public class MDVANode extends AbstractNode<MDVAMsg> {
 /*27*/      if (et == MDVAMsgType.QUERY) {
 /*28*/          if (!s.contains(m) || sd <= rd) {
                     wn.remove(m); // REPLY immediately in this case, undo addition to the reply set
-/*29*/              send.add(new MDVAMsg(MDVAMsgType.REPLY, getId(), m, rd));
+/*29*/              sink.send(new MDVAMsg(MDVAMsgType.REPLY, getId(), m, rd));
                 }
             }
         }
 /*33*/  // we don't need to update s, because it is computed on the fly when needed
-        return send;
     }
 
     // computes successor set
@@ -173,45 +176,77 @@ public class MDVANode extends AbstractNode<MDVAMsg> {
      * Update outgoing link status.
      * @param m the node to which the link was established.
      * @param d distance of the link.
-     * @return the list of messages to send.
+     * @param sink receives messages to send.
      */
     @Override
-    public List<MDVAMsg> updateOutgoingLink(NID m, int d) {
+    public void updateOutgoingLink(NID m, int d, MsgSink<MDVAMsg> sink) {
         assert d < DistUtil.INF;
         ln.put(m, d);
         // process update with last received distance
-        return process(MDVAMsgType.UPDATE, m, DistUtil.get(dn, m));
+        process(MDVAMsgType.UPDATE, m, DistUtil.get(dn, m), sink);
     }
 
     /**
      * Update incoming link status.
      * @param m the node from which the link was established.
-     * @return the list of messages to send.
+     * @param sink receives messages to send.
      */
     @Override
-    public List<MDVAMsg> updateIncomingLink(NID m) {
+    public void updateIncomingLink(NID m, MsgSink<MDVAMsg> sink) {
         boolean newLink = in.add(m);
         if (newLink && rd < DistUtil.INF) // advertise only on new links
-            return Collections.singletonList(new MDVAMsg(MDVAMsgType.UPDATE, getId(), m, rd));
-        else
-            return Collections.emptyList();
+            sink.send(new MDVAMsg(MDVAMsgType.UPDATE, getId(), m, rd));
     }
 
     // remove node link (both incoming and outgoing)
     @Override
-    public List<MDVAMsg> removeLink(NID m) {
+    public void removeLink(NID m, MsgSink<MDVAMsg> sink) {
         // drop incoming link from the node first (don't send QUERY there anymore)
         in.remove(m); // remove it from incoming link tables
         // process distance update on outgoing link
-        List<MDVAMsg> send;
         if (r.contains(m)) // was waiting to reply over this link -- process as if INF was received
-            send = process(MDVAMsgType.REPLY, m, DistUtil.INF);
+            process(MDVAMsgType.REPLY, m, DistUtil.INF, sink);
         else
-            send = process(MDVAMsgType.UPDATE, m, DistUtil.INF);
+            process(MDVAMsgType.UPDATE, m, DistUtil.INF, sink);
         // clear all information about the link
         ln.remove(m); // remove outgoing link
         wn.remove(m); // no longer pending to send REPLY
-        return send;
+    }
+
+    // makes one step for all changes, as if a REPLY with INF distance was received over each removed link
+    @Override
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<MDVAMsg> sink) {
+        Set<NID> s = successorSet(); // previous successor set -- compute before making updates
+        for (NID m : removed) {
+            in.remove(m);
+            r.remove(m);
+            ln.remove(m);
+            dn.remove(m);
+            wn.remove(m);
+        }
+        ln.putAll(outgoing);
+        if (!removed.isEmpty() || !outgoing.isEmpty())
+            step(MDVAMsgType.UPDATE, null, s, sink);
+        for (NID m : incoming)
+            updateIncomingLink(m, sink);
+    }
+
+    @Override
+    public boolean initConverged(Map<NID, Integer> dist, Map<NID, Map<NID, Integer>> links) {
+        for (NID k : ln.keySet())
+            DistUtil.put(dn, k, DistUtil.get(dist, k));
+        fd = bestMDVADist();
+        rd = fd;
+        return true;
+    }
+
+    @Override
+    public MDVANode copy() {
+        MDVANode node = (MDVANode) super.copy();
+        node.wn = new LinkedHashSet<>(wn);
+        node.dn = new HashMap<>(dn);
+        node.r = new LinkedHashSet<>(r);
+        return node;
     }
 
     @Override
@@ -37,4 +37,9 @@ public class MDVAmAlgo extends AbstractAlgo<MDVAmMsg, MDVAmNode> {
         map.put(AbstractNode.LINK_ROUTE, "Routing uses link");
         return map;
     }
+
+    @Override
+    public boolean isLoopFree() {
+        return true;
+    }
 }
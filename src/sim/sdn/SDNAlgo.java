@@ -0,0 +1,51 @@
+package sim.sdn;
+
+import sim.AbstractAlgo;
+import sim.NID;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Centralized controller algorithm: factory class.
+ *
+ * @author Roman Elizarov
+ */
+public class SDNAlgo extends AbstractAlgo<SDNMsg, SDNNode> {
+    // --- statistics, forks of the model update them concurrently ---
+
+    final LongAdder computeNanos = new LongAdder(); // time spent by controller to compute routes
+    final LongAdder pushedBytes = new LongAdder(); // bytes of routes pushed by controller to nodes
+    final LongAdder reportedBytes = new LongAdder(); // bytes of links reported by nodes to controller
+
+    @Override
+    public List<String> getAlgoDescription() {
+        return Arrays.asList(
+            "SDN: Centralized Controller Algorithm",
+            "Controller at the destination node computes all routes"
+        );
+    }
+
+    @Override
+    public SDNNode newNode(NID i) {
+        return new SDNNode(i, this);
+    }
+
+    @Override
+    public List<String> getStats(Collection<SDNNode> nodes) {
+        return Arrays.asList(
+            "controller compute " + computeNanos.sum() / 1000 + " us",
+            "pushed " + pushedBytes.sum() + " bytes",
+            "reported " + reportedBytes.sum() + " bytes"
+        );
+    }
+
+    @Override
+    public void resetStats() {
+        computeNanos.reset();
+        pushedBytes.reset();
+        reportedBytes.reset();
+    }
+}
@@ -0,0 +1,117 @@
+package sim.sdn;
+
+import sim.DistUtil;
+import sim.MsgSink;
+import sim.NID;
+
+import java.util.*;
+
+/**
+ * Centralized controller algorithm: controller that is located at the destination node.
+ * It keeps the whole topology as reported by nodes, recomputes all routes with Dijkstra on every report
+ * and pushes changed routes to nodes.
+ *
+ * @author Roman Elizarov
+ */
+class SDNController {
+    private final SDNAlgo algo; // for statistics
+
+    private Map<NID, Map<NID, Integer>> links = new HashMap<>(); // outgoing links as reported by each node
+    private Map<NID, Map<NID, Integer>> pred = new HashMap<>(); // reverse links, pred[w][v] == d(v,w)
+    private Map<NID, Integer> pd = new HashMap<>(); // distance that was pushed to each node
+    private Map<NID, NID> pnh = new HashMap<>(); // next hop that was pushed to each node
+
+    SDNController(SDNAlgo algo) {
+        this.algo = algo;
+    }
+
+    void report(NID v, Map<NID, Integer> newLinks, MsgSink<SDNMsg> sink) {
+        Map<NID, Integer> oldLinks = links.remove(v);
+        if (oldLinks != null)
+            oldLinks.keySet().forEach(w -> pred.get(w).remove(v));
+        if (!newLinks.isEmpty()) {
+            links.put(v, new HashMap<>(newLinks));
+            newLinks.forEach((w, d) -> pred.computeIfAbsent(w, $ -> new HashMap<>()).put(v, d));
+        }
+        long time = System.nanoTime();
+        Map<NID, Integer> dist = new HashMap<>();
+        Map<NID, NID> nh = new HashMap<>();
+        computeRoutes(dist, nh);
+        algo.computeNanos.add(System.nanoTime() - time);
+        // push changed routes
+        Set<NID> nodes = new HashSet<>(links.keySet());
+        nodes.addAll(pd.keySet());
+        nodes.remove(NID.DEST);
+        for (NID u : nodes) {
+            int d = DistUtil.get(dist, u);
+            NID h = nh.get(u);
+            if (d != DistUtil.get(pd, u) || !Objects.equals(h, pnh.get(u))) {
+                DistUtil.put(pd, u, d);
+                if (h == null)
+                    pnh.remove(u);
+                else
+                    pnh.put(u, h);
+                SDNRouteMsg msg = new SDNRouteMsg(NID.DEST, u, d, h);
+                algo.pushedBytes.add(msg.getSize());
+                sink.send(msg);
+            }
+        }
+    }
+
+    // initializes topology and routes as if all nodes had reported their links and got their routes
+    void init(Map<NID, Map<NID, Integer>> allLinks) {
+        allLinks.forEach((v, map) -> {
+            if (!map.isEmpty()) {
+                links.put(v, new HashMap<>(map));
+                map.forEach((w, d) -> pred.computeIfAbsent(w, $ -> new HashMap<>()).put(v, d));
+            }
+        });
+        Map<NID, Integer> dist = new HashMap<>();
+        Map<NID, NID> nh = new HashMap<>();
+        computeRoutes(dist, nh);
+        for (NID u : links.keySet()) {
+            if (u.equals(NID.DEST))
+                continue;
+            DistUtil.put(pd, u, DistUtil.get(dist, u));
+            if (nh.containsKey(u))
+                pnh.put(u, nh.get(u));
+        }
+    }
+
+    SDNController copy() {
+        SDNController c = new SDNController(algo);
+        c.links.putAll(links);
+        pred.forEach((w, map) -> c.pred.put(w, new HashMap<>(map)));
+        c.pd.putAll(pd);
+        c.pnh.putAll(pnh);
+        return c;
+    }
+
+    // Dijkstra from destination over reverse links, next hop is the smallest one of equal-cost next hops
+    // like nodes select it on warm start
+    private void computeRoutes(Map<NID, Integer> dist, Map<NID, NID> nh) {
+        PriorityQueue<Map.Entry<NID, Integer>> queue = new PriorityQueue<>(Map.Entry.comparingByValue());
+        dist.put(NID.DEST, 0);
+        queue.add(new AbstractMap.SimpleImmutableEntry<>(NID.DEST, 0));
+        while (!queue.isEmpty()) {
+            Map.Entry<NID, Integer> e = queue.remove();
+            NID w = e.getKey();
+            int dw = e.getValue();
+            if (dw != dist.get(w))
+                continue; // outdated queue entry
+            Map<NID, Integer> pw = pred.get(w);
+            if (pw == null)
+                continue;
+            pw.forEach((v, d) -> {
+                int nd = DistUtil.sumDist(dw, d);
+                int old = DistUtil.get(dist, v);
+                if (nd < old) {
+                    dist.put(v, nd);
+                    nh.put(v, w);
+                    queue.add(new AbstractMap.SimpleImmutableEntry<>(v, nd));
+                } else if (nd == old && nd != DistUtil.INF && w.compareTo(nh.get(v)) < 0)
+                    nh.put(v, w);
+            });
+        }
+    }
+}
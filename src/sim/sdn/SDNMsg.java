@@ -0,0 +1,24 @@
+package sim.sdn;
+
+import sim.AbstractMsg;
+import sim.NID;
+
+/**
+ * Centralized controller algorithm: base class for messages that go over control channel between
+ * nodes and controller. They are not dropped when a link between the same nodes is removed.
+ *
+ * @author Roman Elizarov
+ */
+public abstract class SDNMsg extends AbstractMsg {
+    public SDNMsg(NID from, NID to) {
+        super(from, to);
+    }
+
+    // size of message in bytes for statistics
+    public abstract int getSize();
+
+    @Override
+    public boolean isOverLink(NID from, NID to) {
+        return false; // goes over control channel
+    }
+}
@@ -0,0 +1,143 @@
+package sim.sdn;
+
+import sim.AbstractNode;
+import sim.DistUtil;
+import sim.MsgSink;
+import sim.NID;
+
+import java.util.*;
+
+/**
+ * Centralized controller algorithm: logic at the node.
+ *
+ * <p>Nodes report their outgoing links to the controller that is located at the destination node
+ * and install routes that controller pushes back. Messages go over control channel that does not depend
+ * on links between nodes.
+ *
+ * @author Roman Elizarov
+ */
+public class SDNNode extends AbstractNode<SDNMsg> {
+    private final SDNAlgo algo; // for statistics
+    private SDNController controller; // only at the destination node
+
+    // --- algorithm state ---
+
+    private int d; // distance as pushed by controller
+    private NID nh; // next hop as pushed by controller
+
+    public SDNNode(NID i, SDNAlgo algo) {
+        super(i);
+        this.algo = algo;
+        if (NID.DEST.equals(i)) {
+            controller = new SDNController(algo);
+            d = 0;
+        } else {
+            controller = null;
+            d = DistUtil.INF;
+        }
+    }
+
+    @Override
+    public void process(SDNMsg msg, MsgSink<SDNMsg> sink) {
+        assert msg.to.equals(i);
+        if (msg instanceof SDNReportMsg) {
+            controller.report(msg.from, ((SDNReportMsg) msg).links, sink);
+            return;
+        }
+        SDNRouteMsg route = (SDNRouteMsg) msg;
+        d = route.d;
+        nh = route.nh;
+    }
+
+    private void report(MsgSink<SDNMsg> sink) {
+        if (controller != null) {
+            controller.report(i, ln, sink);
+            return;
+        }
+        SDNReportMsg msg = new SDNReportMsg(i, NID.DEST, ln);
+        algo.reportedBytes.add(msg.getSize());
+        sink.send(msg);
+    }
+
+    @Override
+    public void updateOutgoingLink(NID m, int d, MsgSink<SDNMsg> sink) {
+        DistUtil.put(ln, m, d);
+        report(sink);
+    }
+
+    @Override
+    public void updateIncomingLink(NID m, MsgSink<SDNMsg> sink) {
+        in.add(m);
+    }
+
+    @Override
+    public void removeLink(NID m, MsgSink<SDNMsg> sink) {
+        in.remove(m);
+        if (ln.remove(m) != null)
+            report(sink);
+    }
+
+    // all changes of outgoing links are reported at once
+    @Override
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<SDNMsg> sink) {
+        boolean changed = !outgoing.isEmpty();
+        for (NID m : removed) {
+            in.remove(m);
+            if (ln.remove(m) != null)
+                changed = true;
+        }
+        outgoing.forEach((m, d) -> DistUtil.put(ln, m, d));
+        in.addAll(incoming);
+        if (changed)
+            report(sink);
+    }
+
+    @Override
+    public boolean initConverged(Map<NID, Integer> dist, Map<NID, Map<NID, Integer>> links) {
+        if (controller != null) {
+            controller.init(links);
+            return true;
+        }
+        d = DistUtil.get(dist, i);
+        if (d != DistUtil.INF) // the smallest of equal-cost next hops, like controller selects it
+            for (NID k : new TreeSet<>(ln.keySet()))
+                if (DistUtil.sumDist(DistUtil.get(dist, k), ln.get(k)) == d) {
+                    nh = k;
+                    break;
+                }
+        return true;
+    }
+
+    @Override
+    public SDNNode copy() {
+        SDNNode node = (SDNNode) super.copy();
+        if (controller != null)
+            node.controller = controller.copy();
+        return node;
+    }
+
+    @Override
+    public int getLinkFlags(NID m) {
+        return m.equals(nh) ? LINK_ROUTE + LINK_BOLD : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Node " + i +
+                ": d=" + DistUtil.d2s(d) + " nh=" + nh +
+                " ln=" + ln;
+    }
+
+    @Override
+    public void addNodeDataTo(List<String> nodeStr) {
+        nodeStr.add(i + (controller != null ? " CONTROLLER" : ""));
+        nodeStr.add("d=" + DistUtil.d2s(d) + " nh=" + nh);
+    }
+
+    @Override
+    public String verifyQuiescentDistance(int td) {
+        if (d != td)
+            return "Node " + i + " current distance " + DistUtil.d2s(d) + " != " + DistUtil.d2s(td) + " of true distance";
+        return null;
+    }
+}
@@ -0,0 +1,30 @@
+package sim.sdn;
+
+import sim.NID;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Centralized controller algorithm: node reports its outgoing links to controller.
+ *
+ * @author Roman Elizarov
+ */
+public class SDNReportMsg extends SDNMsg {
+    final Map<NID, Integer> links; // outgoing links of the node
+
+    public SDNReportMsg(NID from, NID to, Map<NID, Integer> links) {
+        super(from, to);
+        this.links = new TreeMap<>(links);
+    }
+
+    @Override
+    public int getSize() {
+        return 4 + 8 * links.size(); // number of links, then node id and distance for each link
+    }
+
+    @Override
+    public String getDescription() {
+        return "REPORT " + links;
+    }
+}
@@ -0,0 +1,30 @@
+package sim.sdn;
+
+import sim.DistUtil;
+import sim.NID;
+
+/**
+ * Centralized controller algorithm: controller pushes the route to the node.
+ *
+ * @author Roman Elizarov
+ */
+public class SDNRouteMsg extends SDNMsg {
+    final int d; // distance
+    final NID nh; // next hop, null when there is no route
+
+    public SDNRouteMsg(NID from, NID to, int d, NID nh) {
+        super(from, to);
+        this.d = d;
+        this.nh = nh;
+    }
+
+    @Override
+    public int getSize() {
+        return 8; // distance and next hop node id
+    }
+
+    @Override
+    public String getDescription() {
+        return "ROUTE d=" + DistUtil.d2s(d) + " nh=" + nh;
+    }
+}
@@ -0,0 +1,32 @@
+package sim.sdva;
+
+import sim.AbstractAlgo;
+import sim.NID;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sequenced Distance Vector Algorithm: factory class.
+ *
+ * @author Roman Elizarov
+ */
+public class SDVAAlgo extends AbstractAlgo<SDVAMsg, SDVANode> {
+    @Override
+    public List<String> getAlgoDescription() {
+        return Arrays.asList(
+            "SDVA: Sequenced Distance Vector Algorithm",
+            "Destination sequence numbers with Babel feasibility condition"
+        );
+    }
+
+    @Override
+    public SDVANode newNode(NID i) {
+        return new SDVANode(i);
+    }
+
+    @Override
+    public boolean isLoopFree() {
+        return true;
+    }
+}
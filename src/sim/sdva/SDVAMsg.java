@@ -0,0 +1,30 @@
+package sim.sdva;
+
+import sim.AbstractMsg;
+import sim.DistUtil;
+import sim.NID;
+
+/**
+ * Sequenced Distance Vector Algorithm: message class.
+ *
+ * @author Roman Elizarov
+ */
+public class SDVAMsg extends AbstractMsg {
+    final SDVAMsgType et; // message type
+    final int s; // sequence number
+    final int d; // distance for UPDATE, remaining hop count for REQUEST
+
+    public SDVAMsg(SDVAMsgType et, NID from, NID to, int s, int d) {
+        super(from, to);
+        this.et = et;
+        this.s = s;
+        this.d = d;
+    }
+
+    @Override
+    public String getDescription() {
+        return et == SDVAMsgType.UPDATE ?
+            "UPDATE s=" + s + " d=" + DistUtil.d2s(d) :
+            "REQUEST s=" + s + " h=" + d;
+    }
+}
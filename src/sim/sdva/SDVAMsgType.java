@@ -0,0 +1,11 @@
+package sim.sdva;
+
+/**
+ * Sequenced Distance Vector Algorithm: message type.
+ *
+ * @author Roman Elizarov
+ */
+public enum SDVAMsgType {
+    UPDATE,
+    REQUEST; // sequence number request, goes to destination over outgoing links
+}
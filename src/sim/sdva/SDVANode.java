@@ -0,0 +1,239 @@
+package sim.sdva;
+
+import sim.AbstractNode;
+import sim.DistUtil;
+import sim.MsgSink;
+import sim.NID;
+
+import java.util.*;
+
+/**
+ * Sequenced Distance Vector Algorithm: logic at the node.
+ *
+ * <p>Destination originates a sequence number that is carried by updates with distances. Each node keeps its
+ * feasibility distance -- the highest sequence number it had reported together with the smallest distance it had
+ * reported with this sequence number -- and selects routes only via neighbours whose reports are feasible,
+ * that is either have greater sequence number or the same one and a smaller distance. This keeps routes
+ * loop-free at all times without diffusing computations, as in Babel routing protocol.
+ *
+ * <p>When node has an infeasible route that is better than the selected one (or it has no selected route at all)
+ * it sends sequence number request toward destination, which increases its sequence number
+ * and makes all new updates feasible.
+ *
+ * @author Roman Elizarov
+ */
+public class SDVANode extends AbstractNode<SDVAMsg> {
+    public static final int HOP_LIMIT = 64; // hop count limit for requests
+
+    // --- algorithm state ---
+
+    private Map<NID,Integer> dn = new HashMap<>(); // distance as reported by each neighbour (subset of ln nodes)
+    private Map<NID,Integer> sn = new HashMap<>(); // sequence number as reported by each neighbour (same keys as dn)
+
+    private NID nh; // selected next hop, null when there is no route
+    private int rd; // reported distance
+    private int rs; // reported sequence number (own sequence number at destination)
+    private int fs = -1; // feasibility sequence number, -1 when undefined (all reports are feasible)
+    private int fd = DistUtil.INF; // feasibility distance
+    private int pq = -1; // highest sequence number requested via this node that was forwarded to next hop, -1 if none
+
+    public SDVANode(NID i) {
+        super(i);
+        rd = i.equals(NID.DEST) ? 0 : DistUtil.INF;
+    }
+
+    private boolean isFeasible(NID k) {
+        int d = DistUtil.get(dn, k);
+        if (d == DistUtil.INF)
+            return false;
+        int s = sn.get(k);
+        return s > fs || s == fs && d < fd;
+    }
+
+    @Override
+    public void process(SDVAMsg msg, MsgSink<SDVAMsg> sink) {
+        assert msg.to.equals(i);
+        switch (msg.et) {
+            case UPDATE:
+                if (ln.containsKey(msg.from)) { // only remember reported distances if there is an outgoing link
+                    if (msg.d == DistUtil.INF) {
+                        dn.remove(msg.from);
+                        sn.remove(msg.from);
+                    } else {
+                        dn.put(msg.from, msg.d);
+                        sn.put(msg.from, msg.s);
+                    }
+                }
+                updates(sink);
+                break;
+            case REQUEST:
+                request(msg.s, msg.d, sink);
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private void request(int s, int h, MsgSink<SDVAMsg> sink) {
+        if (NID.DEST.equals(i)) {
+            if (s <= rs)
+                return; // already increased
+            rs = s;
+            sendToAll(sink);
+            return;
+        }
+        // forward request via selected route if it has smaller sequence number, otherwise update is already sent,
+        // don't forward the same request twice -- it will be forwarded again when next hop changes
+        if (rs >= s || s <= pq || h <= 1)
+            return;
+        pq = s;
+        if (nh != null)
+            sink.send(new SDVAMsg(SDVAMsgType.REQUEST, i, nh, s, h - 1));
+    }
+
+    private void updates(MsgSink<SDVAMsg> sink) {
+        if (NID.DEST.equals(i))
+            return; // destination always has zero distance
+        // select best feasible route and find best infeasible one
+        NID best = null;
+        int bd = DistUtil.INF;
+        NID alt = null;
+        int ad = DistUtil.INF;
+        for (NID k : ln.keySet()) {
+            int d = distViaMap(k, dn);
+            if (d == DistUtil.INF)
+                continue;
+            if (isFeasible(k)) {
+                if (d < bd || d == bd && k.equals(nh)) {
+                    best = k;
+                    bd = d;
+                }
+            } else if (d < ad) {
+                alt = k;
+                ad = d;
+            }
+        }
+        boolean nhChanged = !Objects.equals(nh, best);
+        nh = best;
+        int bs = best == null ? rs : sn.get(best);
+        if (bd != rd || bs != rs) {
+            rd = bd;
+            rs = bs;
+            if (rd != DistUtil.INF) {
+                // update feasibility distance with reported one
+                if (rs > fs) {
+                    fs = rs;
+                    fd = rd;
+                } else if (rs == fs && rd < fd)
+                    fd = rd;
+            }
+            sendToAll(sink);
+        }
+        if (pq <= rs)
+            pq = -1; // pending request is satisfied
+        else if (nhChanged && nh != null)
+            sink.send(new SDVAMsg(SDVAMsgType.REQUEST, i, nh, pq, HOP_LIMIT)); // forward pending request again
+        if (ad < bd) // infeasible route is better -- request new sequence number
+            sink.send(new SDVAMsg(SDVAMsgType.REQUEST, i, alt, fs + 1, HOP_LIMIT));
+    }
+
+    private void sendToAll(MsgSink<SDVAMsg> sink) {
+        for (NID j : in)
+            if (!j.equals(NID.DEST)) // never need to send updates to the destination node
+                sink.send(new SDVAMsg(SDVAMsgType.UPDATE, i, j, rs, rd));
+    }
+
+    @Override
+    public void updateOutgoingLink(NID m, int d, MsgSink<SDVAMsg> sink) {
+        DistUtil.put(ln, m, d);
+        updates(sink);
+    }
+
+    @Override
+    public void updateIncomingLink(NID m, MsgSink<SDVAMsg> sink) {
+        if (in.add(m) && rd != DistUtil.INF && !m.equals(NID.DEST))
+            sink.send(new SDVAMsg(SDVAMsgType.UPDATE, i, m, rs, rd));
+    }
+
+    @Override
+    public void removeLink(NID m, MsgSink<SDVAMsg> sink) {
+        forgetLink(m);
+        updates(sink);
+    }
+
+    private void forgetLink(NID m) {
+        ln.remove(m);
+        in.remove(m);
+        dn.remove(m);
+        sn.remove(m);
+    }
+
+    // route is selected and updates are sent once for all changes
+    @Override
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<SDVAMsg> sink) {
+        removed.forEach(this::forgetLink);
+        outgoing.forEach((m, d) -> DistUtil.put(ln, m, d));
+        if (!removed.isEmpty() || !outgoing.isEmpty())
+            updates(sink);
+        for (NID m : incoming)
+            updateIncomingLink(m, sink);
+    }
+
+    @Override
+    public boolean initConverged(Map<NID, Integer> dist, Map<NID, Map<NID, Integer>> links) {
+        // destination has the initial sequence number
+        for (NID k : new TreeSet<>(ln.keySet())) {
+            int d = DistUtil.get(dist, k);
+            if (d == DistUtil.INF)
+                continue;
+            dn.put(k, d);
+            sn.put(k, 0);
+            if (!NID.DEST.equals(i) && distViaMap(k, dn) < rd) {
+                nh = k;
+                rd = distViaMap(k, dn);
+            }
+        }
+        if (nh != null) {
+            fs = 0;
+            fd = rd;
+        }
+        return true;
+    }
+
+    @Override
+    public SDVANode copy() {
+        SDVANode node = (SDVANode) super.copy();
+        node.dn = new HashMap<>(dn);
+        node.sn = new HashMap<>(sn);
+        return node;
+    }
+
+    @Override
+    public int getLinkFlags(NID m) {
+        return m.equals(nh) ? LINK_ROUTE + LINK_BOLD : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Node " + i +
+                ": d=" + DistUtil.d2s(rd) + " s=" + rs + " nh=" + nh +
+                " fs=" + fs + " fd=" + DistUtil.d2s(fd) +
+                " dn=" + dn + " sn=" + sn +
+                " ln=" + ln;
+    }
+
+    @Override
+    public void addNodeDataTo(List<String> nodeStr) {
+        nodeStr.add(i + "");
+        nodeStr.add("d=" + DistUtil.d2s(rd) + " s=" + rs);
+        nodeStr.add("fs=" + fs + " fd=" + DistUtil.d2s(fd));
+        nodeStr.add("dn=" + dn + " sn=" + sn);
+    }
+
+    @Override
+    public String verifyQuiescentDistance(int td) {
+        if (rd != td)
+            return "Node " + i + " current distance " + DistUtil.d2s(rd) + " != " + DistUtil.d2s(td) + " of true distance";
+        return null;
+    }
+}
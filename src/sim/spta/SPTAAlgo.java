@@ -3,28 +3,90 @@ package sim.spta;
 import sim.AbstractAlgo;
 import sim.AbstractMsg;
 import sim.NID;
-import sim.dfb.DFBMsg;
-import sim.dfb.DFBNode;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Distributed Ford-Bellman algorithm: factory class.
+ * Shortest Path Topology Algorithm: factory class.
+ * Takes scope in hops as an option like "SPTA:K=2".
  *
  * @author Roman Elizarov
  */
 public class SPTAAlgo extends AbstractAlgo<AbstractMsg, SPTANode> {
+    public static final String K_OPTION = "K=";
+
+    private final int k;
+
+    // --- statistics, nodes update them concurrently in synchronous rounds ---
+
+    final LongAdder changes = new LongAdder(); // number of topology table changes that were sent to neighbours
+    final LongAdder updates = new LongAdder(); // number of update messages
+    final LongAdder updateEntries = new LongAdder(); // number of links and distances in update messages
+
+    public SPTAAlgo() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public SPTAAlgo(String option) {
+        this(parseK(option));
+    }
+
+    public SPTAAlgo(int k) {
+        if (k <= 0)
+            throw new IllegalArgumentException("Scope must be positive: " + k);
+        this.k = k;
+    }
+
+    private static int parseK(String option) {
+        if (!option.startsWith(K_OPTION))
+            throw new IllegalArgumentException("Unknown option: " + option);
+        return Integer.parseInt(option.substring(K_OPTION.length()));
+    }
+
     @Override
     public List<String> getAlgoDescription() {
+        if (k == Integer.MAX_VALUE)
+            return Arrays.asList(
+                "SPTA: Shortest Path Topology Algorithm",
+                "from \"Broadcasting Topology Information in Computer Networks\""
+            );
         return Arrays.asList(
             "SPTA: Shortest Path Topology Algorithm",
-            "from \"Broadcasting Topology Information in Computer Networks\""
+            "Topology is kept within " + k + " hops, distances are used beyond them",
+            "Count-to-infinity is avoided by limiting distance to " + SPTANode.MAX_DIST
         );
     }
 
     @Override
     public SPTANode newNode(NID i) {
-        return new SPTANode(i);
+        return new SPTANode(i, this, k);
+    }
+
+    @Override
+    public List<String> getStats(Collection<SPTANode> nodes) {
+        int total = 0;
+        int max = 0;
+        for (SPTANode node : nodes) {
+            int size = node.getTableSize();
+            total += size;
+            max = Math.max(max, size);
+        }
+        long changes = this.changes.sum();
+        long updates = this.updates.sum();
+        return Arrays.asList(
+            String.format("topology table %.1f avg %d max entries", nodes.isEmpty() ? 0.0 : (double) total / nodes.size(), max),
+            String.format("update fan-out %.1f msgs per change, %.1f entries per msg",
+                changes == 0 ? 0.0 : (double) updates / changes, updates == 0 ? 0.0 : (double) updateEntries.sum() / updates)
+        );
+    }
+
+    @Override
+    public void resetStats() {
+        changes.reset();
+        updates.reset();
+        updateEntries.reset();
     }
 }
@@ -2,6 +2,7 @@ package sim.spta;
 
 import sim.AbstractMsg;
 import sim.AbstractNode;
+import sim.MsgSink;
 import sim.NID;
 import sim.DistUtil;
 
@@ -12,24 +13,46 @@ import java.util.stream.Collectors;
  * SPTA: Shortest Path Topology Algorithm from
  * "Broadcasting Topology Information in Computer Networks".
  *
+ * <p>In scoped mode the node keeps exact topology only for nodes that are less than k hops away in its
+ * shortest path tree. Nodes on the horizon are used with their distances to destination as reported through
+ * the neighbours, like in distance vector algorithm.
+ *
  * @author Roman Elizarov
  */
 public class SPTANode extends AbstractNode<AbstractMsg> {
+    public static final int MAX_DIST = 2000; // truncate to INF over this dist in scoped mode
+
+    private final SPTAAlgo algo; // for statistics
+    private final int k; // scope in hops, Integer.MAX_VALUE when the whole topology is kept
+
     // --- algorithm state ---
 
     private Map<NID, Map<NID, Map<NID, Integer>>> tn = new HashMap<>(); // topology as reported by each neighbour (subset of ln nodes), tn[i][i] == ln always
     private Map<NID, Map<NID, Integer>> t = new TreeMap<>(); // main topology table
     private Map<NID, Map<NID, Integer>> rt = new TreeMap<>(); // recently sent topology table
 
+    // --- distances to destination of nodes in topology table (in scoped mode only) ---
+
+    private Map<NID, Map<NID, Integer>> tdn = new HashMap<>(); // distances as reported by each neighbour (subset of ln nodes)
+    private Map<NID, Integer> td = new TreeMap<>(); // main distance table
+    private Map<NID, Integer> rtd = new TreeMap<>(); // recently sent distance table
+
     private int d; // best known distance
     private Set<NID> s = new HashSet<>(); // successor set for routing
 
-    public SPTANode(NID i) {
+    public SPTANode(NID i, SPTAAlgo algo, int k) {
         super(i);
+        this.algo = algo;
+        this.k = k;
         d = i.equals(NID.DEST) ? 0 : DistUtil.INF;
         tn.put(i, Collections.singletonMap(i, ln));
     }
 
+    @Override
+    protected void linksReplaced() {
+        tn.put(i, Collections.singletonMap(i, ln));
+    }
+
     public static Map<NID, Map<NID, Integer>> deepCopyT(Map<NID, Map<NID, Integer>> t) {
         Map<NID, Map<NID, Integer>> tt = new TreeMap<>();
         t.forEach((a, map) -> tt.put(a, new TreeMap<>(map)));
@@ -57,45 +80,56 @@ public class SPTANode extends AbstractNode<AbstractMsg> {
     }
 
     @Override
-    public List<AbstractMsg> process(AbstractMsg msg) {
+    public void process(AbstractMsg msg, MsgSink<AbstractMsg> sink) {
         assert msg.to.equals(i);
         if (msg instanceof SPTASnapshotMsg) {
             SPTASnapshotMsg snapshot = (SPTASnapshotMsg) msg;
             tn.put(msg.from, snapshot.t);
+            tdn.put(msg.from, snapshot.td);
         } else if (msg instanceof SPTAUpdateMsg) {
             SPTAUpdateMsg update = (SPTAUpdateMsg) msg;
             update.links.forEach(link -> putTD(tn.get(msg.from), link.from, link.to, link.d));
+            Map<NID, Integer> dn = tdn.get(msg.from);
+            update.dists.forEach((a, d) -> DistUtil.put(dn, a, d));
         }
-        return updates();
+        updates(sink);
     }
 
-    private List<AbstractMsg> updates() {
+    private void updates(MsgSink<AbstractMsg> sink) {
         // rebuild main topology table by running Djikstra from us to all other reachable nodes
         // running Shortest Path Topology Algorithm
         t.clear();
+        td.clear();
         Set<NID> queue = new TreeSet<>(); // prioritize statically
         Map<NID, Integer> dist = new HashMap<>();
         Map<NID, NID> cn = new HashMap<>(); // closest neighbour (to use distance info from)
+        Map<NID, Integer> hops = new HashMap<>(); // number of hops in shortest path tree
+        Set<NID> horizon = new HashSet<>(); // nodes whose links are not known
         queue.add(i);
         dist.put(i, 0);
         cn.put(i, i);
+        hops.put(i, 0);
         while (!queue.isEmpty()) {
             NID i = bestDistInQueue(queue, dist);
             queue.remove(i);
             int di = dist.get(i);
+            int hi = hops.get(i);
             NID cni = cn.get(i);
+            if (isScoped() && !this.i.equals(i))
+                DistUtil.put(td, i, getTD(tdn, cni, i));
             Map<NID, Map<NID, Integer>> ct = tn.get(cni); // correct topology (from closest neighbour)
-            if (ct == null)
-                continue;
-            Map<NID, Integer> map = ct.get(i); // outgoing link map to use
-            if (map == null)
+            Map<NID, Integer> map = ct == null || hi >= k ? null : ct.get(i); // outgoing link map to use
+            if (map == null) {
+                horizon.add(i);
                 continue;
+            }
             map.forEach((j, d) -> {
                 int oldD = DistUtil.get(dist, j);
                 int newD = di + d;
                 if (newD < oldD) {
                     queue.add(j);
                     dist.put(j, newD);
+                    hops.put(j, hi + 1);
                     if (this.i.equals(i)) {
                         // first expansion from initial node -- initial node's neighbours
                         cn.put(j, j);
@@ -106,10 +140,18 @@ public class SPTANode extends AbstractNode<AbstractMsg> {
                 putTD(t, i, j, d);
             });
         }
-        // now run Djikstra again over computed topology t and compute successor set
+        // now run Djikstra again over computed topology t and compute successor set,
+        // starting from horizon nodes with their reported distances, too
         dist.clear();
         dist.put(NID.DEST, 0);
         queue.add(NID.DEST);
+        for (NID a : horizon) {
+            int da = DistUtil.get(td, a);
+            if (da < DistUtil.get(dist, a)) {
+                queue.add(a);
+                dist.put(a, da);
+            }
+        }
         while (!queue.isEmpty()) {
             NID i = bestDistInQueue(queue, dist);
             queue.remove(i);
@@ -127,6 +169,11 @@ public class SPTANode extends AbstractNode<AbstractMsg> {
             });
         }
         d = DistUtil.get(dist, i); // distance to destination is computed
+        if (isScoped()) {
+            if (d > MAX_DIST)
+                d = DistUtil.INF;
+            DistUtil.put(td, i, d);
+        }
         s.clear(); // recompute successor set below
         if (d != DistUtil.INF)
             ln.forEach((j, jd) -> {
@@ -146,16 +193,52 @@ public class SPTANode extends AbstractNode<AbstractMsg> {
                 changes.add(new SPTAUpdateMsg.Link(a, b, newD));
         }));
         rt = deepCopyT(t);
-        // construct updates relevant to each node
-        List<AbstractMsg> send = new ArrayList<>();
+        Map<NID, Integer> distChanges = new TreeMap<>();
+        rtd.forEach((a, oldD) -> {
+            int newD = DistUtil.get(td, a);
+            if (oldD != newD)
+                distChanges.put(a, newD);
+        });
+        td.forEach((a, newD) -> {
+            if (!rtd.containsKey(a))
+                distChanges.put(a, newD);
+        });
+        rtd = new TreeMap<>(td);
+        // construct updates relevant to each node, they share changes unless some are to be filtered out
+        int sent = 0;
         for (NID to : in) {
-            ArrayList<SPTAUpdateMsg.Link> links = changes.stream()
-                    .filter(link -> !link.from.equals(to))
-                    .collect(Collectors.toCollection(ArrayList::new));
-            if (!links.isEmpty())
-                send.add(new SPTAUpdateMsg(i, to, links));
+            List<SPTAUpdateMsg.Link> links = changes;
+            if (changes.stream().anyMatch(link -> link.from.equals(to)))
+                links = changes.stream()
+                        .filter(link -> !link.from.equals(to))
+                        .collect(Collectors.toCollection(ArrayList::new));
+            Map<NID, Integer> dists = distChanges;
+            if (distChanges.containsKey(to)) {
+                dists = new TreeMap<>(distChanges);
+                dists.remove(to);
+            }
+            if (!links.isEmpty() || !dists.isEmpty()) {
+                sink.send(new SPTAUpdateMsg(i, to, links, dists));
+                algo.updateEntries.add(links.size() + dists.size());
+                sent++;
+            }
         }
-        return send;
+        if (sent > 0) {
+            algo.changes.increment();
+            algo.updates.add(sent);
+        }
+    }
+
+    private boolean isScoped() {
+        return k != Integer.MAX_VALUE;
+    }
+
+    // number of links and distances in topology table
+    int getTableSize() {
+        int size = td.size();
+        for (Map<NID, Integer> map : t.values())
+            size += map.size();
+        return size;
     }
 
     private NID bestDistInQueue(Set<NID> queue, Map<NID, Integer> dist) {
@@ -171,25 +254,53 @@ public class SPTANode extends AbstractNode<AbstractMsg> {
     }
 
     @Override
-    public List<AbstractMsg> updateOutgoingLink(NID m, int d) {
+    public void updateOutgoingLink(NID m, int d, MsgSink<AbstractMsg> sink) {
         DistUtil.put(ln, m, d);
-        return updates();
+        updates(sink);
     }
 
     @Override
-    public List<AbstractMsg> updateIncomingLink(NID m) {
+    public void updateIncomingLink(NID m, MsgSink<AbstractMsg> sink) {
         if (in.add(m))
-            return Collections.singletonList(new SPTASnapshotMsg(i, m, t));
-        else
-            return Collections.emptyList();
+            sink.send(new SPTASnapshotMsg(i, m, t, td));
     }
 
     @Override
-    public List<AbstractMsg> removeLink(NID m) {
+    public void removeLink(NID m, MsgSink<AbstractMsg> sink) {
+        forgetLink(m);
+        updates(sink);
+    }
+
+    private void forgetLink(NID m) {
         ln.remove(m);
         in.remove(m);
         tn.remove(m);
-        return updates();
+        tdn.remove(m);
+    }
+
+    // topology is recomputed and updates are sent once for all changes
+    @Override
+    public void updateLinks(Set<NID> removed, Map<NID, Integer> outgoing, Set<NID> incoming, MsgSink<AbstractMsg> sink) {
+        removed.forEach(this::forgetLink);
+        outgoing.forEach((m, d) -> DistUtil.put(ln, m, d));
+        if (!removed.isEmpty() || !outgoing.isEmpty())
+            updates(sink);
+        for (NID m : incoming)
+            updateIncomingLink(m, sink);
+    }
+
+    @Override
+    public SPTANode copy() {
+        SPTANode node = (SPTANode) super.copy();
+        node.tn = new HashMap<>();
+        tn.forEach((j, t) -> node.tn.put(j, deepCopyT(t)));
+        node.tn.put(i, Collections.singletonMap(i, node.ln));
+        node.t = deepCopyT(t);
+        node.tdn = new HashMap<>();
+        tdn.forEach((j, td) -> node.tdn.put(j, new TreeMap<>(td)));
+        node.td = new TreeMap<>(td);
+        node.s = new HashSet<>(s);
+        return node;
     }
 
     @Override
@@ -201,7 +312,8 @@ public class SPTANode extends AbstractNode<AbstractMsg> {
     public String toString() {
         return "Node " + i +
                 ": d=" + DistUtil.d2s(d) +
-                " t=" + t;
+                " t=" + t +
+                (isScoped() ? " td=" + td : "");
     }
 
     @Override
@@ -209,6 +321,8 @@ public class SPTANode extends AbstractNode<AbstractMsg> {
         nodeStr.add(i + "");
         nodeStr.add("d=" + DistUtil.d2s(d));
         nodeStr.add("t=" + t);
+        if (isScoped())
+            nodeStr.add("td=" + td);
     }
 
     @Override
@@ -10,14 +10,23 @@ import java.util.*;
  */
 public class SPTASnapshotMsg extends AbstractMsg {
     final Map<NID, Map<NID, Integer>> t;
+    final Map<NID, Integer> td;
 
-    public SPTASnapshotMsg(NID from, NID to, Map<NID, Map<NID, Integer>> t) {
+    public SPTASnapshotMsg(NID from, NID to, Map<NID, Map<NID, Integer>> t, Map<NID, Integer> td) {
         super(from, to);
         this.t = SPTANode.deepCopyT(t);
+        this.td = new TreeMap<>(td);
+    }
+
+    @Override
+    public SPTASnapshotMsg copy() {
+        SPTASnapshotMsg msg = new SPTASnapshotMsg(from, to, t, td); // receiver takes over t and td
+        msg.firstOverLink = firstOverLink;
+        return msg;
     }
 
     @Override
     public String getDescription() {
-        return "SNAPSHOT " + t;
+        return "SNAPSHOT " + t + (td.isEmpty() ? "" : " td=" + td);
     }
 }
@@ -5,6 +5,7 @@ import sim.DistUtil;
 import sim.NID;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Roman Elizarov
@@ -29,14 +30,16 @@ public class SPTAUpdateMsg extends AbstractMsg {
     }
 
     final List<Link> links;
+    final Map<NID, Integer> dists; // changed distances to destination (in scoped mode only)
 
-    public SPTAUpdateMsg(NID from, NID to, List<Link> links) {
+    public SPTAUpdateMsg(NID from, NID to, List<Link> links, Map<NID, Integer> dists) {
         super(from, to);
         this.links = links;
+        this.dists = dists;
     }
 
     @Override
     public String getDescription() {
-        return "UPDATE " + links;
+        return "UPDATE " + links + (dists.isEmpty() ? "" : " dists=" + dists);
     }
 }